@@ -1,5 +1,6 @@
 plugins {
     alias(libs.plugins.android.application)
+    alias(libs.plugins.baselineprofile)
 }
 
 android {
@@ -20,6 +21,24 @@ android {
         val zhipuApiKey = project.findProperty("ZHIPU_API_KEY") as? String
             ?: throw GradleException("ZHIPU_API_KEY is not defined in gradle.properties. Please check the file.")
         buildConfigField("String", "ZHIPU_API_KEY", "\"${zhipuApiKey}\"")
+        val zhipuApiUrl = project.findProperty("ZHIPU_API_URL") as? String
+            ?: "https://open.bigmodel.cn/api/paas/v4/chat/completions"
+        buildConfigField("String", "ZHIPU_API_URL", "\"${zhipuApiUrl}\"")
+        // 各任务使用的模型：营养查询默认走低延迟模型，校验失败时升级；建议使用高质量模型
+        val nutritionModel = project.findProperty("ZHIPU_NUTRITION_MODEL") as? String ?: "glm-4-flash"
+        buildConfigField("String", "ZHIPU_NUTRITION_MODEL", "\"${nutritionModel}\"")
+        val escalationModel = project.findProperty("ZHIPU_ESCALATION_MODEL") as? String ?: "glm-4"
+        buildConfigField("String", "ZHIPU_ESCALATION_MODEL", "\"${escalationModel}\"")
+        val adviceModel = project.findProperty("ZHIPU_ADVICE_MODEL") as? String ?: "glm-4"
+        buildConfigField("String", "ZHIPU_ADVICE_MODEL", "\"${adviceModel}\"")
+        // 结果页先显示本地建议；为 true 时再异步请求大模型建议替换
+        val llmAdviceEnabled = project.findProperty("LLM_ADVICE_ENABLED") as? String ?: "true"
+        buildConfigField("boolean", "LLM_ADVICE_ENABLED", llmAdviceEnabled)
+        // 营养查询的对冲分位与软截止时间，可在 gradle.properties 中覆盖
+        val hedgePercentile = project.findProperty("NUTRITION_HEDGE_PERCENTILE") as? String ?: "0.95"
+        buildConfigField("double", "NUTRITION_HEDGE_PERCENTILE", hedgePercentile)
+        val softDeadlineMs = project.findProperty("NUTRITION_SOFT_DEADLINE_MS") as? String ?: "5000"
+        buildConfigField("long", "NUTRITION_SOFT_DEADLINE_MS", "${softDeadlineMs}L")
     }
 
     buildTypes {
@@ -36,6 +55,22 @@ android {
             applicationIdSuffix = ".debug"
             versionNameSuffix = "-DEBUG"
         }
+        // Macrobenchmark 测量的包：与 release 相同的 R8 优化，使用调试签名，
+        // 并带上 src/debug 中的本地模拟接口与历史数据填充入口（见下方 sourceSets）
+        create("benchmark") {
+            initWith(getByName("release"))
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+            isDebuggable = false
+        }
+    }
+
+    sourceSets {
+        getByName("benchmark") {
+            java.srcDir("src/debug/java")
+            assets.srcDir("src/debug/assets")
+            manifest.srcFile("src/debug/AndroidManifest.xml")
+        }
     }
 
     compileOptions {
@@ -60,6 +95,12 @@ android {
     }
 }
 
+baselineProfile {
+    // 生成的规则合并进 release 包（src/release/generated/baselineProfiles）
+    automaticGenerationDuringBuild = false
+    saveInSrc = true
+}
+
 configurations.all {
     resolutionStrategy.eachDependency {
         when (requested.group) {
@@ -78,14 +119,23 @@ dependencies {
     implementation(libs.cardview)
     implementation(libs.org.json)
     implementation(libs.lifecycle.runtime)
+    implementation(libs.lifecycle.viewmodel)
+    implementation(libs.lifecycle.viewmodel.savedstate)
+    implementation(libs.lifecycle.livedata)
     implementation(libs.core.splashscreen)
     implementation(libs.datastore.preferences)
     implementation(libs.sqlite.ktx)
     implementation(libs.okhttp)
+    // 安装时按随包的 Baseline Profile 预编译启动与主流程代码
+    implementation(libs.profileinstaller)
+    baselineProfile(project(":benchmark"))
     coreLibraryDesugaring(libs.desugar.jdk.libs)
+    debugImplementation(libs.mockwebserver)
+    "benchmarkImplementation"(libs.mockwebserver)
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
     androidTestImplementation(libs.test.rules)
+    androidTestImplementation(libs.mockwebserver)
     debugImplementation(libs.fragment.testing)
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.example.fitnesee;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在真机上测量下一餐优化的耗时：5000 个候选，预热后取多次运行的中位数，应在 TIME_BUDGET_MS 之内。
+ * 单元测试只用可控时钟检查预算逻辑，不断言实际耗时。
+ */
+@RunWith(AndroidJUnit4.class)
+public class MealOptimizerBenchmark {
+    private static final String TAG = "MealOptimizerBenchmark";
+    private static final int CANDIDATES = 5000;
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 21;
+
+    @Test
+    public void optimize_medianWithinBudget() {
+        List<MealOptimizer.Candidate> candidates = syntheticCandidates(CANDIDATES, 42);
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            MealOptimizer.optimize(candidates, 600, 40, 20, 60);
+        }
+        long[] elapsedMs = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            MealOptimizer.optimize(candidates, 600, 40, 20, 60);
+            elapsedMs[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        Arrays.sort(elapsedMs);
+        long median = elapsedMs[MEASURED_RUNS / 2];
+        Log.i(TAG, "optimize over " + CANDIDATES + " candidates: median " + median + " ms, max " + elapsedMs[MEASURED_RUNS - 1] + " ms");
+        assertTrue("median " + median + " ms", median <= MealOptimizer.TIME_BUDGET_MS);
+    }
+
+    private static List<MealOptimizer.Candidate> syntheticCandidates(int count, long seed) {
+        Random random = new Random(seed);
+        List<MealOptimizer.Candidate> candidates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double protein = random.nextDouble() * 30;
+            double fat = random.nextDouble() * 25;
+            double carb = random.nextDouble() * 70;
+            double calories = protein * 4 + fat * 9 + carb * 4;
+            candidates.add(new MealOptimizer.Candidate(
+                    new AdviceEngine.Food("food-" + i, calories, protein, fat, carb, null, 0), random.nextInt(20)));
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.fitnesee;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 基于本地模拟智谱接口的集成测试，无需网络。
+ */
+@RunWith(AndroidJUnit4.class)
+public class MockZhipuServerTest {
+    private static final long LAYERED_ADVICE_TIMEOUT_MS = 30000;
+    private NutritionDatabase db;
+    private Context context;
+    private final BlockingQueue<NutritionDatabase.DailyFoodData> upgrades = new LinkedBlockingQueue<>();
+    // 测试用的是应用自己的数据库，结束后删掉本次写入的食物缓存与日志
+    private final List<String> insertedFoods = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = new NutritionDatabase(context);
+    }
+
+    @After
+    public void tearDown() {
+        MockZhipuServer.stop();
+        if (!insertedFoods.isEmpty()) {
+            SQLiteDatabase sqlite = db.getWritableDatabase();
+            for (String food : insertedFoods) {
+                sqlite.delete(NutritionDatabase.TABLE_FOOD, NutritionDatabase.COLUMN_NAME + " = ?", new String[]{food});
+                sqlite.delete(NutritionDatabase.TABLE_LOG, NutritionDatabase.LOG_FOOD_NAME + " = ?", new String[]{food});
+            }
+            // 缓存快照可能已经带上测试食物，重新生成
+            FoodCacheSnapshot.scheduleWrite(context);
+        }
+        db.close();
+    }
+
+    @Test
+    public void nutritionLookupUsesRecordedResponse() throws Exception {
+        MockZhipuServer mock = MockZhipuServer.start(context, new MockZhipuServer.Config());
+        // 未录制的食物按 100 kcal/100g 回放，名字唯一以避开本地缓存
+        String food = "mock-food-" + System.nanoTime();
+
+        NutritionDatabase.DailyFoodData result = analyze(food, 200);
+
+        assertNotNull(result);
+        assertEquals(200.0, result.totalCalories, 0.01);
+        assertEquals(10.0, result.totalProtein, 0.01);
+        // 先交付本地建议，大模型建议随后替换
+        assertTrue(result.advice.startsWith("您摄入的热量为200.0千卡"));
+        NutritionDatabase.DailyFoodData layered = upgrades.poll(LAYERED_ADVICE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(layered);
+        assertTrue(layered.advice.contains("建议下一餐：200g鸡胸肉"));
+        assertEquals(2, mock.getRequestCount());
+    }
+
+    @Test
+    public void rateLimitedRequestsFallBackToDefaults() throws Exception {
+        MockZhipuServer.Config config = new MockZhipuServer.Config();
+        config.errorRate = 1.0;
+        config.errorCode = 429;
+        MockZhipuServer mock = MockZhipuServer.start(context, config);
+        long foodFallbacks = PerfMetrics.get().getCount(PerfMetrics.COUNT_FALLBACK_FOOD);
+        long adviceFallbacks = PerfMetrics.get().getCount(PerfMetrics.COUNT_FALLBACK_ADVICE);
+
+        NutritionDatabase.DailyFoodData result = analyze("mock-food-" + System.nanoTime(), 200);
+
+        assertNotNull(result);
+        assertEquals(100.0, result.totalCalories, 0.01);
+        assertNotNull(result.advice);
+        assertEquals(foodFallbacks + 1, PerfMetrics.get().getCount(PerfMetrics.COUNT_FALLBACK_FOOD));
+        // 大模型建议异步请求，失败后保留本地建议
+        awaitCount(PerfMetrics.COUNT_FALLBACK_ADVICE, adviceFallbacks + 1);
+        assertTrue(upgrades.isEmpty());
+        // 营养查询和建议各自按 Retry-After 退避重试两次后才放弃
+        assertEquals(6, mock.getRequestCount());
+    }
+
+    private NutritionDatabase.DailyFoodData analyze(String food, double grams) {
+        AtomicReference<NutritionDatabase.DailyFoodData> result = new AtomicReference<>();
+        AtomicReference<String> error = new AtomicReference<>();
+        insertedFoods.add(food);
+        db.fetchDailyFoodData(
+                Collections.singletonList(new NutritionDatabase.MealEntry(food, grams, "breakfast")),
+                new NutritionDatabase.OnDailyDataFetchedListener() {
+                    @Override
+                    public void onDataFetched(NutritionDatabase.DailyFoodData dailyFoodData, double totalCalories, double totalProtein, double totalFat, double totalCarb, double recommendedCalories, String advice) {
+                        result.set(dailyFoodData);
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        error.set(errorMessage);
+                    }
+
+                    @Override
+                    public void onDataUpgraded(NutritionDatabase.DailyFoodData dailyFoodData) {
+                        upgrades.add(dailyFoodData);
+                    }
+                });
+        assertNull(error.get());
+        return result.get();
+    }
+
+    private static void awaitCount(String counter, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + LAYERED_ADVICE_TIMEOUT_MS;
+        while (PerfMetrics.get().getCount(counter) < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(expected, PerfMetrics.get().getCount(counter));
+    }
+}
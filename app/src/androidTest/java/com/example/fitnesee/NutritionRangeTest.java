@@ -0,0 +1,265 @@
+package com.example.fitnesee;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * 按带年份的日期列查询日期范围：跨年顺序、首尾日期包含在内、升级时推断年份的旧记录，
+ * 以及 SQL 中按天、餐次汇总的结果与逐条累加一致。
+ * 使用独立的数据库文件，结束后删除。
+ */
+@RunWith(AndroidJUnit4.class)
+public class NutritionRangeTest {
+    private static final String DATABASE_NAME = "nutrition-range-test.db";
+    private static final double DELTA = 0.01;
+    private Context context;
+    private NutritionDatabase db;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        db = new NutritionDatabase(context, DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void rangeAcrossNewYear_isOrderedAndInclusive() {
+        SQLiteDatabase sqlite = db.getWritableDatabase();
+        insertFood(sqlite, "测试米饭", 100, 10, 5, 20);
+        insertLog(sqlite, date(2025, 12, 30, 12), "测试米饭", 100, "lunch", true);
+        insertLog(sqlite, date(2025, 12, 31, 8), "测试米饭", 200, "breakfast", true);
+        insertLog(sqlite, date(2026, 1, 1, 12), "测试米饭", 100, "lunch", true);
+        insertLog(sqlite, date(2026, 1, 1, 19), "测试米饭", 50, "dinner", true);
+        insertLog(sqlite, date(2026, 1, 1, 20), "没有缓存的食物", 80, "dinner", true);
+        insertLog(sqlite, date(2026, 1, 2, 8), "测试米饭", 100, "breakfast", true);
+        // 往年的同一天不属于这个范围
+        insertLog(sqlite, date(2024, 12, 31, 8), "测试米饭", 300, "breakfast", true);
+        sqlite.close();
+
+        // 首尾两天的时刻不影响范围，按日期包含在内
+        NutritionDatabase.RangeReport report = db.getRange(date(2025, 12, 31, 23), date(2026, 1, 1, 0));
+
+        List<NutritionDatabase.DayNutrition> days = daysOf(report);
+        assertEquals(2, days.size());
+        assertEquals("12月31日", days.get(0).day);
+        assertEquals(200, days.get(0).totals.calories, DELTA);
+        assertEquals(20, days.get(0).totals.protein, DELTA);
+        assertEquals("01月01日", days.get(1).day);
+        assertEquals(150, days.get(1).totals.calories, DELTA);
+        assertEquals(1, days.get(1).unresolvedFoods);
+        assertEquals(350, report.totalCalories, DELTA);
+        assertEquals(1, report.unresolvedFoods);
+    }
+
+    @Test
+    public void backfilledRows_useInferredYear() {
+        SQLiteDatabase sqlite = db.getWritableDatabase();
+        insertFood(sqlite, "测试米饭", 100, 10, 5, 20);
+        insertLog(sqlite, date(2025, 12, 31, 20), "测试米饭", 100, "dinner", false);
+        insertLog(sqlite, date(2026, 1, 1, 8), "测试米饭", 200, "breakfast", false);
+        // 月日晚于 now，推断为去年（2025-01-02），不在范围内
+        insertLog(sqlite, date(2026, 1, 2, 8), "测试米饭", 400, "breakfast", false);
+        NutritionDatabase.backfillLogDays(sqlite, date(2026, 1, 1, 12));
+        sqlite.close();
+
+        List<NutritionDatabase.DayNutrition> days = daysOf(db.getRange(date(2025, 12, 31, 0), date(2026, 1, 1, 0)));
+
+        assertEquals(2, days.size());
+        assertEquals("12月31日", days.get(0).day);
+        assertEquals(100, days.get(0).totals.calories, DELTA);
+        assertEquals("01月01日", days.get(1).day);
+        assertEquals(200, days.get(1).totals.calories, DELTA);
+        assertEquals(1, daysOf(db.getRange(date(2025, 1, 2, 0), date(2025, 1, 2, 0))).size());
+    }
+
+    @Test
+    public void upgradeFromV14_backfillsLogDays() {
+        Date now = new Date();
+        Date yesterday = new Date(now.getTime() - 24L * 60 * 60 * 1000);
+        Date tomorrow = new Date(now.getTime() + 24L * 60 * 60 * 1000);
+        db.close();
+        SQLiteDatabase old = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DATABASE_NAME), null);
+        old.execSQL("CREATE TABLE food_nutrients (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT, protein REAL, fat REAL, carb REAL, calories REAL)");
+        old.execSQL("CREATE TABLE user_profile (user_id INTEGER PRIMARY KEY AUTOINCREMENT, weight REAL, height REAL, age INTEGER, gender TEXT, goal TEXT)");
+        old.execSQL("CREATE TABLE upload_log (id INTEGER PRIMARY KEY AUTOINCREMENT, timestamp TEXT, food_name TEXT, grams REAL, meal_type TEXT)");
+        insertFood(old, "测试米饭", 100, 10, 5, 20);
+        insertLog(old, yesterday, "测试米饭", 100, "lunch", false);
+        // 月日还没到的记录属于去年
+        insertLog(old, tomorrow, "测试米饭", 200, "lunch", false);
+        old.setVersion(14);
+        old.close();
+
+        db = new NutritionDatabase(context, DATABASE_NAME);
+
+        List<NutritionDatabase.DayNutrition> days = daysOf(db.getRange(yesterday, yesterday));
+        assertEquals(1, days.size());
+        assertEquals(100, days.get(0).totals.calories, DELTA);
+        assertTrue(daysOf(db.getRange(tomorrow, tomorrow)).isEmpty());
+        int tomorrowKey = NutritionDatabase.dayKey(tomorrow);
+        int expected = (tomorrowKey / 10000 - 1) * 10000 + tomorrowKey % 10000;
+        List<NutritionDatabase.LogEntry> logs = db.getLogPage(null, 10);
+        assertEquals(2, logs.size());
+        for (NutritionDatabase.LogEntry entry : logs) {
+            if (entry.grams == 200) {
+                assertEquals(expected, entry.day);
+            } else {
+                assertEquals(NutritionDatabase.dayKey(yesterday), entry.day);
+            }
+        }
+    }
+
+    @Test
+    public void rangeTotals_matchRowsSummedPerDayAndMeal() {
+        Map<String, double[]> foods = new HashMap<>();
+        foods.put("测试米饭", new double[]{116, 2.6, 0.3, 25.9});
+        foods.put("测试鸡蛋", new double[]{144, 13.3, 8.8, 2.8});
+        // 同名的旧缓存记录，汇总应只用最新一条
+        SQLiteDatabase sqlite = db.getWritableDatabase();
+        insertFood(sqlite, "测试鸡蛋", 999, 99, 99, 99);
+        for (Map.Entry<String, double[]> food : foods.entrySet()) {
+            double[] v = food.getValue();
+            insertFood(sqlite, food.getKey(), v[0], v[1], v[2], v[3]);
+        }
+        // 按时间顺序给出；2025 与 2026 年的 03月05日 月日相同，必须分开汇总
+        LogRow[] rows = {
+                new LogRow(date(2025, 3, 5, 8), "测试米饭", 150, "breakfast"),
+                new LogRow(date(2025, 3, 5, 12), "测试鸡蛋", 100, "lunch"),
+                new LogRow(date(2025, 3, 5, 13), "测试米饭", 200, "lunch"),
+                new LogRow(date(2025, 3, 6, 19), "没有缓存的食物", 80, "dinner"),
+                new LogRow(date(2026, 3, 5, 8), "测试鸡蛋", 50, "breakfast"),
+                new LogRow(date(2026, 3, 5, 9), "测试米饭", 100, "breakfast"),
+                new LogRow(date(2026, 3, 5, 20), "测试鸡蛋", 120, "dinner"),
+                new LogRow(date(2026, 3, 11, 8), "测试米饭", 100, "breakfast"),
+        };
+        for (LogRow row : rows) {
+            insertLog(sqlite, row.time, row.food, row.grams, row.mealType, true);
+        }
+        sqlite.close();
+        Date from = date(2025, 3, 5, 0);
+        Date to = date(2026, 3, 10, 0);
+
+        // 逐条累加：按（日期, 餐次）分组，组的顺序为日期、组内最早记录的时间
+        Map<String, double[]> expected = new LinkedHashMap<>();
+        Map<String, String> expectedDays = new HashMap<>();
+        for (LogRow row : rows) {
+            int day = NutritionDatabase.dayKey(row.time);
+            if (day < NutritionDatabase.dayKey(from) || day > NutritionDatabase.dayKey(to)) {
+                continue;
+            }
+            String key = day + "/" + row.mealType;
+            double[] sum = expected.get(key);
+            if (sum == null) {
+                sum = new double[6];
+                expected.put(key, sum);
+                String timestamp = NutritionDatabase.timestampFormat.format(row.time);
+                expectedDays.put(key, timestamp.substring(0, timestamp.indexOf(' ')));
+            }
+            double[] per100g = foods.get(row.food);
+            sum[4]++;
+            if (per100g == null) {
+                sum[5]++;
+                continue;
+            }
+            for (int i = 0; i < 4; i++) {
+                sum[i] += row.grams * per100g[i] / 100;
+            }
+        }
+
+        List<NutritionDatabase.NutrientTotals> totals = db.getRangeTotals(from, to);
+
+        assertEquals(expected.size(), totals.size());
+        int index = 0;
+        for (Map.Entry<String, double[]> entry : expected.entrySet()) {
+            NutritionDatabase.NutrientTotals actual = totals.get(index++);
+            double[] sum = entry.getValue();
+            assertEquals(entry.getKey(), expectedDays.get(entry.getKey()), actual.day);
+            assertEquals(entry.getKey(), entry.getKey().substring(entry.getKey().indexOf('/') + 1), actual.mealType);
+            assertEquals(entry.getKey(), sum[0], actual.calories, DELTA);
+            assertEquals(entry.getKey(), sum[1], actual.protein, DELTA);
+            assertEquals(entry.getKey(), sum[2], actual.fat, DELTA);
+            assertEquals(entry.getKey(), sum[3], actual.carb, DELTA);
+            assertEquals(entry.getKey(), (int) sum[4], actual.entries);
+            assertEquals(entry.getKey(), (int) sum[5], actual.unresolvedEntries);
+        }
+    }
+
+    private static final class LogRow {
+        final Date time;
+        final String food;
+        final double grams;
+        final String mealType;
+
+        LogRow(Date time, String food, double grams, String mealType) {
+            this.time = time;
+            this.food = food;
+            this.grams = grams;
+            this.mealType = mealType;
+        }
+    }
+
+    static Date date(int year, int month, int day, int hour) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("Asia/Shanghai"));
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, 0, 0);
+        return calendar.getTime();
+    }
+
+    static void insertFood(SQLiteDatabase sqlite, String name, double calories, double protein, double fat, double carb) {
+        ContentValues values = new ContentValues();
+        values.put(NutritionDatabase.COLUMN_NAME, name);
+        values.put(NutritionDatabase.COLUMN_CALORIES, calories);
+        values.put(NutritionDatabase.COLUMN_PROTEIN, protein);
+        values.put(NutritionDatabase.COLUMN_FAT, fat);
+        values.put(NutritionDatabase.COLUMN_CARB, carb);
+        sqlite.insertOrThrow(NutritionDatabase.TABLE_FOOD, null, values);
+    }
+
+    /**
+     * withDay 为 false 时不写日期列，模拟升级前的记录。
+     */
+    static void insertLog(SQLiteDatabase sqlite, Date time, String food, double grams, String mealType, boolean withDay) {
+        ContentValues values = new ContentValues();
+        values.put(NutritionDatabase.LOG_TIMESTAMP, NutritionDatabase.timestampFormat.format(time));
+        values.put(NutritionDatabase.LOG_FOOD_NAME, food);
+        values.put(NutritionDatabase.LOG_GRAMS, grams);
+        values.put(NutritionDatabase.LOG_MEAL_TYPE, mealType);
+        if (withDay) {
+            values.put(NutritionDatabase.LOG_DAY, NutritionDatabase.dayKey(time));
+        }
+        sqlite.insertOrThrow(NutritionDatabase.TABLE_LOG, null, values);
+    }
+
+    private static List<NutritionDatabase.DayNutrition> daysOf(NutritionDatabase.RangeReport report) {
+        List<NutritionDatabase.DayNutrition> days = new ArrayList<>();
+        for (NutritionDatabase.DayNutrition day : report) {
+            days.add(day);
+        }
+        return days;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.fitnesee;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.Toast;
+
+import java.io.IOException;
+
+/**
+ * 无界面的调试入口，用于启动/停止本地模拟智谱接口，例如：
+ * adb shell am start -n com.example.fitnesee.debug/com.example.fitnesee.MockApiActivity \
+ *     --ez enable true --el latency_ms 800 --ef error_rate 0.1 --ei error_code 429
+ * 加上 --ez wait true 时等服务器启动完成后才结束，配合 am start -W 可同步等待（基准测试使用）。
+ */
+public class MockApiActivity extends Activity {
+    private static final String TAG = "MockApiActivity";
+    public static final String EXTRA_ENABLE = "enable";
+    public static final String EXTRA_LATENCY_MS = "latency_ms";
+    public static final String EXTRA_JITTER_MS = "jitter_ms";
+    public static final String EXTRA_ERROR_RATE = "error_rate";
+    public static final String EXTRA_ERROR_CODE = "error_code";
+    public static final String EXTRA_SEED = "seed";
+    public static final String EXTRA_WAIT = "wait";
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        Intent intent = getIntent();
+        boolean enable = intent == null || intent.getBooleanExtra(EXTRA_ENABLE, true);
+
+        if (!enable) {
+            MockZhipuServer.stop();
+            Toast.makeText(this, "已停止本地模拟接口", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+
+        MockZhipuServer.Config config = new MockZhipuServer.Config();
+        if (intent != null) {
+            config.latencyMs = intent.getLongExtra(EXTRA_LATENCY_MS, config.latencyMs);
+            config.jitterMs = intent.getLongExtra(EXTRA_JITTER_MS, config.jitterMs);
+            config.errorRate = intent.getFloatExtra(EXTRA_ERROR_RATE, (float) config.errorRate);
+            config.errorCode = intent.getIntExtra(EXTRA_ERROR_CODE, config.errorCode);
+            config.seed = intent.getLongExtra(EXTRA_SEED, config.seed);
+        }
+
+        // MockWebServer 需要绑定端口，放到后台线程启动
+        Thread starter = new Thread(() -> {
+            try {
+                MockZhipuServer.start(getApplicationContext(), config);
+                runOnUiThread(() -> Toast.makeText(this, "本地模拟接口已启动: " + ZhipuClient.getEndpoint(), Toast.LENGTH_SHORT).show());
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to start mock server: " + e.getMessage(), e);
+                runOnUiThread(() -> Toast.makeText(this, "模拟接口启动失败: " + e.getMessage(), Toast.LENGTH_LONG).show());
+            }
+            runOnUiThread(this::finish);
+        }, "mock-zhipu-start");
+        starter.start();
+        if (intent != null && intent.getBooleanExtra(EXTRA_WAIT, false)) {
+            try {
+                starter.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.fitnesee;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * 本地模拟的智谱 chat/completions 接口（仅调试包）。
+ * 回放 assets/mock_zhipu 下录制的 glm-4 响应，可配置延迟、抖动、错误率与错误码（401/402/429 等），
+ * 相同 seed 下的请求序列产生相同的结果，便于离线压测与集成测试。
+ */
+public final class MockZhipuServer {
+    private static final String TAG = "MockZhipuServer";
+    public static final String CHAT_PATH = "/api/paas/v4/chat/completions";
+    private static final String ASSET_DIR = "mock_zhipu/";
+    private static final Pattern TOTAL_PATTERN = Pattern.compile("Total calories consumed: ([\\d.]+)");
+    private static final Pattern RECOMMENDED_PATTERN = Pattern.compile("Recommended daily calories: ([\\d.]+)");
+
+    private static MockZhipuServer running;
+
+    public static final class Config {
+        public long latencyMs = 0;
+        public long jitterMs = 0;
+        public double errorRate = 0;
+        public int errorCode = 500;
+        public long retryAfterSeconds = 1;
+        public long seed = 42;
+    }
+
+    private final MockWebServer server = new MockWebServer();
+    private final Config config;
+    private final Random random;
+    private final String nutritionTemplate;
+    private final String adviceTemplate;
+    private final Map<String, double[]> foods;
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    private MockZhipuServer(Context context, Config config) throws IOException {
+        this.config = config;
+        this.random = new Random(config.seed);
+        this.nutritionTemplate = readAsset(context, ASSET_DIR + "nutrition_response.json");
+        this.adviceTemplate = readAsset(context, ASSET_DIR + "advice_response.json");
+        this.foods = parseFoods(readAsset(context, ASSET_DIR + "foods.json"));
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return respond(request);
+            }
+        });
+    }
+
+    /**
+     * 启动模拟服务器并把 ZhipuClient 指向它；已有实例会先被关闭。不要在主线程调用。
+     */
+    public static synchronized MockZhipuServer start(Context context, Config config) throws IOException {
+        stop();
+        MockZhipuServer mock = new MockZhipuServer(context.getApplicationContext(), config);
+        mock.server.start();
+        ZhipuClient.setEndpointOverride(mock.server.url(CHAT_PATH).toString());
+        running = mock;
+        Log.i(TAG, "Mock Zhipu server started at " + ZhipuClient.getEndpoint());
+        return mock;
+    }
+
+    public static synchronized void stop() {
+        if (running == null) {
+            return;
+        }
+        try {
+            running.server.shutdown();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to shut down mock server: " + e.getMessage(), e);
+        }
+        running = null;
+        ZhipuClient.setEndpointOverride(null);
+        Log.i(TAG, "Mock Zhipu server stopped");
+    }
+
+    public static synchronized MockZhipuServer current() {
+        return running;
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    private MockResponse respond(RecordedRequest request) {
+        requestCount.incrementAndGet();
+        long delayMs;
+        boolean fail;
+        // 随机数按请求到达顺序串行消费，保证同一 seed 下可复现
+        synchronized (random) {
+            delayMs = config.latencyMs + (config.jitterMs > 0 ? (long) (random.nextDouble() * config.jitterMs) : 0);
+            fail = config.errorRate > 0 && random.nextDouble() < config.errorRate;
+        }
+
+        MockResponse response = new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setHeadersDelay(delayMs, TimeUnit.MILLISECONDS);
+        if (fail) {
+            response.setResponseCode(config.errorCode)
+                    .setBody(errorBody(config.errorCode));
+            if (config.errorCode == 429) {
+                response.setHeader("Retry-After", config.retryAfterSeconds);
+            }
+            return response;
+        }
+
+        String body = request.getBody().readUtf8();
+        String prompt = lastUserContent(body);
+        // 营养查询使用结构化输出模式：用户消息只有食物名，回复 JSON 对象
+        if (isStructuredRequest(body)) {
+            return response.setResponseCode(200)
+                    .setBody(nutritionTemplate.replace("{{content}}", JSONObject.quote(nutritionContent(prompt))));
+        }
+        return response.setResponseCode(200)
+                .setBody(adviceTemplate
+                        .replace("{{total}}", firstGroup(TOTAL_PATTERN, prompt))
+                        .replace("{{recommended}}", firstGroup(RECOMMENDED_PATTERN, prompt)));
+    }
+
+    private String nutritionContent(String foodName) {
+        double[] values = foods.get(foodName.toLowerCase(Locale.ROOT));
+        if (values == null) {
+            values = new double[]{100, 5, 3, 15};
+        }
+        return String.format(Locale.US, "{\"kcal\":%.1f,\"protein\":%.1f,\"fat\":%.1f,\"carb\":%.1f}",
+                values[0], values[1], values[2], values[3]);
+    }
+
+    private static boolean isStructuredRequest(String body) {
+        try {
+            JSONObject format = new JSONObject(body).optJSONObject("response_format");
+            return format != null && "json_object".equals(format.optString("type"));
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    private static String errorBody(int code) {
+        String message;
+        switch (code) {
+            case 401:
+                message = "令牌已过期或验证不正确";
+                break;
+            case 402:
+                message = "您的账户已欠费";
+                break;
+            case 429:
+                message = "当前API请求过多，请稍后重试";
+                break;
+            default:
+                message = "服务内部错误";
+        }
+        return "{\"error\":{\"code\":\"" + code + "\",\"message\":" + JSONObject.quote(message) + "}}";
+    }
+
+    private static String lastUserContent(String body) {
+        try {
+            JSONArray messages = new JSONObject(body).getJSONArray("messages");
+            return messages.getJSONObject(messages.length() - 1).optString("content", "");
+        } catch (JSONException e) {
+            Log.w(TAG, "Unparseable request body: " + e.getMessage());
+            return "";
+        }
+    }
+
+    private static String firstGroup(Pattern pattern, String text) {
+        Matcher m = pattern.matcher(text);
+        return m.find() ? m.group(1) : "0";
+    }
+
+    private static Map<String, double[]> parseFoods(String json) throws IOException {
+        Map<String, double[]> result = new HashMap<>();
+        try {
+            JSONObject root = new JSONObject(json);
+            Iterator<String> keys = root.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                JSONArray array = root.getJSONArray(key);
+                result.put(key.toLowerCase(Locale.ROOT), new double[]{
+                        array.getDouble(0), array.getDouble(1), array.getDouble(2), array.getDouble(3)});
+            }
+        } catch (JSONException e) {
+            throw new IOException("Invalid foods.json: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    private static String readAsset(Context context, String path) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (InputStream in = context.getAssets().open(path);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
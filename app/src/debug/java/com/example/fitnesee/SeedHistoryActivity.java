@@ -0,0 +1,95 @@
+package com.example.fitnesee;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.Toast;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * 无界面的调试入口，向历史日志中批量写入模拟记录，用于日志页滚动的基准测试，例如：
+ * adb shell am start -W -n com.example.fitnesee.debug/com.example.fitnesee.SeedHistoryActivity \
+ *     --ei count 10000 --ei days 200 --ez reset true
+ * 写入在 onCreate 中同步完成，am start -W 返回时数据已经就绪。
+ */
+public class SeedHistoryActivity extends Activity {
+    private static final String TAG = "SeedHistoryActivity";
+    public static final String EXTRA_COUNT = "count";
+    public static final String EXTRA_DAYS = "days";
+    public static final String EXTRA_RESET = "reset";
+    private static final String[] FOODS = {"鸡蛋", "米饭", "鸡胸肉", "牛肉", "三文鱼", "牛奶", "燕麦", "面条", "馒头", "苹果",
+            "香蕉", "西兰花", "红薯", "豆腐"};
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        Intent intent = getIntent();
+        int count = intent != null ? intent.getIntExtra(EXTRA_COUNT, 10000) : 10000;
+        // 每条记录都写入带年份的日期，跨年的历史同样按先后排序
+        int days = Math.max(1, intent != null ? intent.getIntExtra(EXTRA_DAYS, 200) : 200);
+        boolean reset = intent == null || intent.getBooleanExtra(EXTRA_RESET, true);
+
+        long start = System.currentTimeMillis();
+        NutritionDatabase nutritionDb = new NutritionDatabase(getApplicationContext());
+        File file = new File(getCacheDir(), "seed_history.jsonl");
+        try {
+            if (reset) {
+                nutritionDb.getWritableDatabase().delete(NutritionDatabase.TABLE_LOG, null, null);
+            }
+            writeRecords(file, count, days);
+            HistoryTransfer.Result result;
+            try (InputStream in = new FileInputStream(file)) {
+                result = new HistoryTransfer(this, nutritionDb).importFrom(in);
+            }
+            Log.d(TAG, "Seeded " + result + " in " + (System.currentTimeMillis() - start) + " ms");
+            Toast.makeText(this, "已写入：" + result, Toast.LENGTH_SHORT).show();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to seed history: " + e.getMessage(), e);
+            Toast.makeText(this, "写入模拟记录失败: " + e.getMessage(), Toast.LENGTH_LONG).show();
+        } finally {
+            nutritionDb.close();
+            file.delete();
+        }
+        finish();
+    }
+
+    /**
+     * 以导出文件的 JSON Lines 格式生成记录：从今天往前均匀分布，每条时间戳互不相同。
+     */
+    private static void writeRecords(File file, int count, int days) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("MM月dd日 HH:mm:ss", Locale.getDefault());
+        format.setTimeZone(TimeZone.getTimeZone("Asia/Shanghai"));
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("Asia/Shanghai"));
+        long now = calendar.getTimeInMillis();
+        long stepMs = Math.max(1000, days * 24L * 3600 * 1000 / Math.max(1, count));
+        Random random = new Random(42);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 64 * 1024)) {
+            for (int i = 0; i < count; i++) {
+                calendar.setTimeInMillis(now - i * stepMs);
+                String mealType = MealEntryViewModel.MEAL_TYPES[Math.min(3, calendar.get(Calendar.HOUR_OF_DAY) / 6)];
+                writer.write("{\"type\":\"log\",\"timestamp\":" + JSONObject.quote(format.format(calendar.getTime())) +
+                        ",\"food_name\":" + JSONObject.quote(FOODS[random.nextInt(FOODS.length)]) +
+                        ",\"grams\":" + (50 + random.nextInt(20) * 10) +
+                        ",\"meal_type\":\"" + mealType + "\"" +
+                        ",\"day\":" + NutritionDatabase.dayKey(calendar.getTime()) + "}\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,472 @@
+package com.example.fitnesee;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 本地建议引擎：按 assets/advice/catalog.json 中的餐食模板、目标营养素比例和运动消耗表，
+ * 在设备上直接生成下一餐或明天的饮食建议与运动建议，毫秒级完成，不依赖网络。
+ * 提交后先展示本地建议，大模型建议（如启用）之后异步替换。
+ */
+public final class AdviceEngine {
+    private static final String TAG = "AdviceEngine";
+    static final String CATALOG_ASSET = "advice/catalog.json";
+    static final String GOAL_LOSE = "lose";
+    static final String GOAL_GAIN = "gain";
+    static final String GOAL_MAINTAIN = "maintain";
+    static final String[] MAIN_MEALS = {"breakfast", "lunch", "dinner"};
+    // 模板份量按预算缩放的范围，超出时宁可热量有偏差也不给出离谱的份量
+    private static final double MIN_SCALE = 0.6;
+    private static final double MAX_SCALE = 1.6;
+
+    private static volatile AdviceEngine instance;
+
+    private final Map<String, String> mealLabels = new HashMap<>();
+    private final Map<String, Double> mealSplit = new HashMap<>();
+    private final Map<String, GoalConfig> goals = new HashMap<>();
+    private final List<String> burnExercises = new ArrayList<>();
+    private final Map<String, Food> foods = new HashMap<>();
+    private final List<Template> templates = new ArrayList<>();
+    private final Map<String, Exercise> exercises = new HashMap<>();
+
+    /**
+     * 进程内共享的实例，第一次调用时读取目录（启动预热时已在后台完成）。目录读取失败时只给出热量对比。
+     */
+    public static AdviceEngine get(Context context) {
+        AdviceEngine engine = instance;
+        if (engine == null) {
+            synchronized (AdviceEngine.class) {
+                engine = instance;
+                if (engine == null) {
+                    engine = load(context.getApplicationContext());
+                    instance = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    private static AdviceEngine load(Context context) {
+        long start = System.currentTimeMillis();
+        try (InputStream in = context.getAssets().open(CATALOG_ASSET)) {
+            AdviceEngine engine = fromJson(readFully(in));
+            Log.d(TAG, "Loaded advice catalog with " + engine.templates.size() + " templates in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            return engine;
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Failed to load advice catalog: " + e.getMessage(), e);
+            return new AdviceEngine();
+        }
+    }
+
+    static AdviceEngine fromJson(String json) throws JSONException {
+        AdviceEngine engine = new AdviceEngine();
+        JSONObject root = new JSONObject(json);
+
+        JSONObject labels = root.getJSONObject("mealLabels");
+        JSONObject split = root.getJSONObject("mealSplit");
+        for (String meal : MAIN_MEALS) {
+            engine.mealLabels.put(meal, labels.optString(meal, meal));
+            engine.mealSplit.put(meal, split.optDouble(meal, 1.0 / MAIN_MEALS.length));
+        }
+
+        JSONObject goalsJson = root.getJSONObject("goals");
+        for (Iterator<String> it = goalsJson.keys(); it.hasNext(); ) {
+            String goal = it.next();
+            JSONObject g = goalsJson.getJSONObject(goal);
+            engine.goals.put(goal, new GoalConfig(g.getDouble("proteinPerKg"), g.getDouble("fatRatio"),
+                    toStringList(g.optJSONArray("exercises"))));
+        }
+        engine.burnExercises.addAll(toStringList(root.optJSONArray("burnExercises")));
+
+        JSONObject foodsJson = root.getJSONObject("foods");
+        JSONObject units = root.optJSONObject("units");
+        for (Iterator<String> it = foodsJson.keys(); it.hasNext(); ) {
+            String name = it.next();
+            JSONArray values = foodsJson.getJSONArray(name);
+            JSONArray unit = units != null ? units.optJSONArray(name) : null;
+            engine.foods.put(name, new Food(name, values.getDouble(0), values.getDouble(1), values.getDouble(2),
+                    values.getDouble(3), unit != null ? unit.getString(0) : null, unit != null ? unit.getDouble(1) : 0));
+        }
+
+        JSONArray templatesJson = root.getJSONArray("templates");
+        for (int i = 0; i < templatesJson.length(); i++) {
+            JSONObject t = templatesJson.getJSONObject(i);
+            List<Portion> items = new ArrayList<>();
+            JSONArray itemsJson = t.getJSONArray("items");
+            for (int j = 0; j < itemsJson.length(); j++) {
+                JSONArray item = itemsJson.getJSONArray(j);
+                Food food = engine.foods.get(item.getString(0));
+                if (food == null) {
+                    throw new JSONException("Template references unknown food: " + item.getString(0));
+                }
+                items.add(new Portion(food, item.getDouble(1)));
+            }
+            engine.templates.add(new Template(t.getString("meal"), new HashSet<>(toStringList(t.getJSONArray("goals"))), items));
+        }
+
+        JSONObject exercisesJson = root.getJSONObject("exercises");
+        for (Iterator<String> it = exercisesJson.keys(); it.hasNext(); ) {
+            String name = it.next();
+            JSONObject e = exercisesJson.getJSONObject(name);
+            engine.exercises.put(name, new Exercise(name, e.getDouble("met"), e.getInt("minutes"), e.optString("note", null)));
+        }
+        return engine;
+    }
+
+    /**
+     * 个人信息中的目标可能是英文代码或界面上的中文选项，统一为 lose / gain / maintain。
+     */
+    static String normalizeGoal(String goal) {
+        if (goal == null) {
+            return GOAL_MAINTAIN;
+        }
+        String g = goal.trim().toLowerCase(Locale.ROOT);
+        if (g.equals(GOAL_LOSE) || g.contains("减")) {
+            return GOAL_LOSE;
+        }
+        if (g.equals(GOAL_GAIN) || g.contains("增")) {
+            return GOAL_GAIN;
+        }
+        return GOAL_MAINTAIN;
+    }
+
+    /**
+     * 每日营养目标：蛋白质按体重，脂肪按热量占比，其余热量分给碳水。
+     */
+    public Targets targetsFor(NutritionDatabase.UserProfile profile, double recommendedCalories) {
+        GoalConfig config = goals.get(normalizeGoal(profile.goal));
+        double proteinPerKg = config != null ? config.proteinPerKg : 1.2;
+        double fatRatio = config != null ? config.fatRatio : 0.3;
+        double protein = profile.weight * proteinPerKg;
+        double fat = recommendedCalories * fatRatio / 9;
+        double carb = Math.max(0, (recommendedCalories - protein * 4 - fat * 9) / 4);
+        return new Targets(recommendedCalories, protein, fat, carb);
+    }
+
+    /**
+     * 生成建议文本。hourOfDay 为北京时间的小时，用于判断下一餐；userFoods 为食物缓存中的食物及其食用次数，
+     * 下一餐优先用 MealOptimizer 在目录与这些食物中搜索组合，没有结果时退回模板。
+     */
+    public String generate(NutritionDatabase.UserProfile profile, double recommendedCalories, FoodColumns.Totals totals, int hourOfDay,
+                           List<MealOptimizer.Candidate> userFoods) {
+        String goal = normalizeGoal(profile.goal);
+        Targets targets = targetsFor(profile, recommendedCalories);
+        double remainingCalories = recommendedCalories - totals.calories;
+        StringBuilder advice = new StringBuilder();
+        advice.append(String.format(Locale.US, "您摄入的热量为%.1f千卡，推荐热量为%.1f千卡\n", totals.calories, recommendedCalories));
+        advice.append(String.format(Locale.US, "今日目标：蛋白质%.0fg，脂肪%.0fg，碳水%.0fg", targets.protein, targets.fat, targets.carb));
+        double proteinGap = targets.protein - totals.protein;
+        if (proteinGap >= 5) {
+            advice.append(String.format(Locale.US, "（蛋白质还差约%.0fg）", proteinGap));
+        }
+        advice.append('\n');
+
+        String nextMeal = nextMeal(totals, hourOfDay);
+        if (nextMeal != null && remainingCalories > 0) {
+            double share = mealShare(nextMeal, totals);
+            List<Portion> plan = optimizeMeal(userFoods, remainingCalories * share, Math.max(0, proteinGap) * share,
+                    Math.max(0, targets.fat - totals.fat) * share, Math.max(0, targets.carb - totals.carb) * share);
+            if (plan.isEmpty()) {
+                plan = planMeal(nextMeal, goal, remainingCalories * share, Math.max(0, proteinGap) * share);
+            }
+            if (!plan.isEmpty()) {
+                advice.append("建议下一餐（").append(mealLabels.get(nextMeal)).append("）：\n");
+                for (Portion portion : plan) {
+                    advice.append(portion.describe()).append('\n');
+                }
+            }
+        } else {
+            StringBuilder tomorrow = new StringBuilder();
+            for (String meal : MAIN_MEALS) {
+                double split = mealSplit.get(meal);
+                List<Portion> plan = planMeal(meal, goal, recommendedCalories * split, targets.protein * split);
+                if (plan.isEmpty()) {
+                    continue;
+                }
+                tomorrow.append(mealLabels.get(meal)).append('：');
+                for (int i = 0; i < plan.size(); i++) {
+                    tomorrow.append(i == 0 ? "" : "，").append(plan.get(i).describe());
+                }
+                tomorrow.append('\n');
+            }
+            if (tomorrow.length() > 0) {
+                advice.append("明天的健康饮食建议：\n").append(tomorrow);
+            }
+        }
+
+        appendExercise(advice, profile.weight, goal, totals.calories - recommendedCalories);
+        return advice.toString();
+    }
+
+    /**
+     * 与原有逻辑一致：早上 10 点前算早餐时段、16 点前算午餐时段，其后没有下一餐；三餐都已记录时也没有。
+     */
+    private static String nextMeal(FoodColumns.Totals totals, int hourOfDay) {
+        int mealsCompleted = 0;
+        for (String meal : MAIN_MEALS) {
+            if (totals.mealCalories(FoodColumns.mealOrdinal(meal)) > 0) {
+                mealsCompleted++;
+            }
+        }
+        if (mealsCompleted >= MAIN_MEALS.length) {
+            return null;
+        }
+        return hourOfDay < 10 ? "lunch" : hourOfDay < 16 ? "dinner" : null;
+    }
+
+    /**
+     * 剩余热量中分给 meal 的比例：按 meal 及其之后尚未记录的正餐的分配比例折算。
+     */
+    private double mealShare(String meal, FoodColumns.Totals totals) {
+        double total = 0;
+        boolean reached = false;
+        for (String m : MAIN_MEALS) {
+            reached |= m.equals(meal);
+            if (reached && (m.equals(meal) || totals.mealCalories(FoodColumns.mealOrdinal(m)) <= 0)) {
+                total += mealSplit.get(m);
+            }
+        }
+        return total > 0 ? mealSplit.get(meal) / total : 1;
+    }
+
+    /**
+     * 目录中的食物与用户食物合并为候选（同名时沿用目录中的计数单位，食用次数取用户数据）后搜索组合。
+     */
+    List<Portion> optimizeMeal(List<MealOptimizer.Candidate> userFoods, double calories, double protein, double fat, double carb) {
+        Map<String, MealOptimizer.Candidate> candidates = new LinkedHashMap<>();
+        for (Food food : foods.values()) {
+            candidates.put(food.name, new MealOptimizer.Candidate(food, 0));
+        }
+        for (MealOptimizer.Candidate candidate : userFoods) {
+            Food known = foods.get(candidate.food.name);
+            candidates.put(candidate.food.name, known != null ? new MealOptimizer.Candidate(known, candidate.uses) : candidate);
+        }
+        try (PerfMetrics.Span ignored = PerfMetrics.get().begin(PerfMetrics.STAGE_MEAL_OPTIMIZER)) {
+            return MealOptimizer.optimize(new ArrayList<>(candidates.values()), calories, protein, fat, carb);
+        }
+    }
+
+    /**
+     * 从适合该目标与餐次的模板中，选出按热量预算缩放后热量与蛋白质最接近目标的一个。
+     */
+    List<Portion> planMeal(String meal, String goal, double kcalBudget, double proteinTarget) {
+        List<Portion> best = Collections.emptyList();
+        double bestScore = Double.MAX_VALUE;
+        for (Template template : templates) {
+            if (!template.meal.equals(meal) || !template.goals.contains(goal) || template.calories <= 0) {
+                continue;
+            }
+            double scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, kcalBudget / template.calories));
+            List<Portion> portions = new ArrayList<>(template.items.size());
+            double kcal = 0;
+            double protein = 0;
+            for (Portion item : template.items) {
+                Portion scaled = item.scaled(scale);
+                portions.add(scaled);
+                kcal += scaled.calories();
+                protein += scaled.protein();
+            }
+            double score = Math.abs(kcal - kcalBudget) / Math.max(kcalBudget, 1)
+                    + 0.5 * Math.abs(protein - proteinTarget) / Math.max(proteinTarget, 10);
+            if (score < bestScore) {
+                bestScore = score;
+                best = portions;
+            }
+        }
+        return best;
+    }
+
+    private void appendExercise(StringBuilder advice, double weightKg, String goal, double excessCalories) {
+        StringBuilder lines = new StringBuilder();
+        if (excessCalories > 0) {
+            lines.append(String.format(Locale.US, "您的热量摄入超标%.1f千卡，以下任选一项即可消耗：\n", excessCalories));
+            for (String name : burnExercises) {
+                Exercise exercise = exercises.get(name);
+                if (exercise == null) {
+                    continue;
+                }
+                // 向上取整到 5 分钟
+                int minutes = (int) Math.ceil(excessCalories / exercise.kcalPerMinute(weightKg) / 5) * 5;
+                lines.append(exercise.describe(minutes, weightKg)).append('\n');
+            }
+        } else {
+            GoalConfig config = goals.get(goal);
+            for (String name : config != null ? config.exercises : Collections.<String>emptyList()) {
+                Exercise exercise = exercises.get(name);
+                if (exercise == null) {
+                    continue;
+                }
+                lines.append(exercise.describe(exercise.minutes, weightKg));
+                if (exercise.note != null) {
+                    lines.append("（").append(exercise.note).append("）");
+                }
+                lines.append('\n');
+            }
+        }
+        if (lines.length() > 0) {
+            advice.append("\n运动建议：\n").append(lines);
+        }
+    }
+
+    private static List<String> toStringList(JSONArray array) throws JSONException {
+        List<String> values = new ArrayList<>();
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                values.add(array.getString(i));
+            }
+        }
+        return values;
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    public static final class Targets {
+        public final double calories, protein, fat, carb;
+
+        Targets(double calories, double protein, double fat, double carb) {
+            this.calories = calories;
+            this.protein = protein;
+            this.fat = fat;
+            this.carb = carb;
+        }
+    }
+
+    private static final class GoalConfig {
+        final double proteinPerKg;
+        final double fatRatio;
+        final List<String> exercises;
+
+        GoalConfig(double proteinPerKg, double fatRatio, List<String> exercises) {
+            this.proteinPerKg = proteinPerKg;
+            this.fatRatio = fatRatio;
+            this.exercises = exercises;
+        }
+    }
+
+    /**
+     * 目录中的食物，营养数据按每 100g；unit 为常用计数单位（如“个”）及其克数，可为空。
+     */
+    static final class Food {
+        final String name;
+        final double calories, protein, fat, carb;
+        final String unit;
+        final double unitGrams;
+
+        Food(String name, double calories, double protein, double fat, double carb, String unit, double unitGrams) {
+            this.name = name;
+            this.calories = calories;
+            this.protein = protein;
+            this.fat = fat;
+            this.carb = carb;
+            this.unit = unit;
+            this.unitGrams = unitGrams;
+        }
+    }
+
+    static final class Portion {
+        final Food food;
+        final double grams;
+
+        Portion(Food food, double grams) {
+            this.food = food;
+            this.grams = grams;
+        }
+
+        /**
+         * 按比例缩放并取整：有计数单位的按整数个（至少 1 个），其余按 10g。
+         */
+        Portion scaled(double scale) {
+            double target = grams * scale;
+            if (food.unit != null && food.unitGrams > 0) {
+                return new Portion(food, Math.max(1, Math.round(target / food.unitGrams)) * food.unitGrams);
+            }
+            return new Portion(food, Math.max(10, Math.round(target / 10) * 10));
+        }
+
+        double calories() {
+            return food.calories * grams / 100;
+        }
+
+        double protein() {
+            return food.protein * grams / 100;
+        }
+
+        String describe() {
+            if (food.unit != null && food.unitGrams > 0) {
+                return String.format(Locale.US, "%s%d%s约%.0f千卡", food.name, Math.round(grams / food.unitGrams), food.unit, calories());
+            }
+            return String.format(Locale.US, "%s%.0fg约%.0f千卡", food.name, grams, calories());
+        }
+    }
+
+    private static final class Template {
+        final String meal;
+        final Set<String> goals;
+        final List<Portion> items;
+        final double calories;
+
+        Template(String meal, Set<String> goals, List<Portion> items) {
+            this.meal = meal;
+            this.goals = goals;
+            this.items = items;
+            double kcal = 0;
+            for (Portion item : items) {
+                kcal += item.calories();
+            }
+            this.calories = kcal;
+        }
+    }
+
+    private static final class Exercise {
+        final String name;
+        final double met;
+        final int minutes;
+        final String note;
+
+        Exercise(String name, double met, int minutes, String note) {
+            this.name = name;
+            this.met = met;
+            this.minutes = minutes;
+            this.note = note;
+        }
+
+        // 千卡/分钟 = MET × 3.5 × 体重(kg) / 200
+        double kcalPerMinute(double weightKg) {
+            return met * 3.5 * weightKg / 200;
+        }
+
+        String describe(int minutes, double weightKg) {
+            return String.format(Locale.US, "%s%d分钟消耗约%.0f千卡", name, minutes, kcalPerMinute(weightKg) * minutes);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.fitnesee;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 智谱接口调用的统一调度：令牌桶限速 + 按优先级排队 + 并发上限。
+ * 调用方线程在 acquire() 中等待轮到自己（队首、有空闲并发槽、有令牌且不在退避期），
+ * 请求结束后 release() 归还并发槽；收到 429/503 时按 Retry-After（没有时按指数退避）暂停整个队列，
+ * 这样一批查询会以接口可持续的最大速率依次发出，而不是集中失败。
+ */
+public final class ApiScheduler {
+    private static final String TAG = "ApiScheduler";
+    // Retry-After 过大时不让调用方无限期等待
+    static final long MAX_BACKOFF_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final long BASE_BACKOFF_MS = 1000;
+
+    /**
+     * 数值越小越先执行：界面正在等待的建议 > 提交时的营养查询 > 后台预取与缓存刷新。
+     */
+    public enum Priority {
+        INTERACTIVE,
+        NORMAL,
+        BACKGROUND
+    }
+
+    private final int capacity;
+    private final double tokensPerMs;
+    private final int maxConcurrent;
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+    private double tokens;
+    private long lastRefillMs;
+    private long pausedUntilMs;
+    private int inFlight;
+    private long sequence;
+    private int consecutiveThrottles;
+
+    public ApiScheduler(int capacity, double tokensPerSecond, int maxConcurrent) {
+        if (capacity < 1 || tokensPerSecond <= 0 || maxConcurrent < 1) {
+            throw new IllegalArgumentException("Invalid scheduler limits");
+        }
+        this.capacity = capacity;
+        this.tokensPerMs = tokensPerSecond / 1000.0;
+        this.maxConcurrent = maxConcurrent;
+        this.tokens = capacity;
+        this.lastRefillMs = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * 阻塞直到可以发出一个请求，返回排队等待的毫秒数。被中断时放弃排队。
+     */
+    public synchronized long acquire(Priority priority) throws InterruptedException {
+        long start = SystemClock.elapsedRealtime();
+        Waiter waiter = new Waiter(priority, sequence++);
+        waiters.add(waiter);
+        try {
+            while (true) {
+                if (waiters.peek() != waiter || inFlight >= maxConcurrent) {
+                    wait();
+                    continue;
+                }
+                long now = SystemClock.elapsedRealtime();
+                refill(now);
+                long waitMs = Math.max(pausedUntilMs - now, tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerMs));
+                if (waitMs <= 0) {
+                    tokens -= 1;
+                    inFlight++;
+                    waiters.remove(waiter);
+                    // 下一个排队者可能也能立即出发
+                    notifyAll();
+                    return now - start;
+                }
+                wait(waitMs);
+            }
+        } catch (InterruptedException e) {
+            waiters.remove(waiter);
+            notifyAll();
+            throw e;
+        }
+    }
+
+    /**
+     * 请求结束（无论成功与否）后调用。code 为 HTTP 状态码，网络异常时传 -1。
+     *
+     * @return 被限流时本次计算出的退避毫秒数，否则为 0
+     */
+    public synchronized long release(int code, String retryAfter) {
+        inFlight = Math.max(0, inFlight - 1);
+        long backoffMs = 0;
+        if (isThrottled(code)) {
+            long parsed = parseRetryAfter(retryAfter, System.currentTimeMillis());
+            backoffMs = parsed >= 0 ? parsed : BASE_BACKOFF_MS << Math.min(consecutiveThrottles, 5);
+            backoffMs = Math.min(backoffMs, MAX_BACKOFF_MS);
+            consecutiveThrottles++;
+            pausedUntilMs = Math.max(pausedUntilMs, SystemClock.elapsedRealtime() + backoffMs);
+            // 被限流说明桶里的令牌并不可信，清空后按正常速率重新积累
+            refill(SystemClock.elapsedRealtime());
+            tokens = 0;
+            Log.w(TAG, "Throttled with " + code + ", pausing requests for " + backoffMs + " ms");
+        } else if (code >= 200 && code < 300) {
+            consecutiveThrottles = 0;
+        }
+        notifyAll();
+        return backoffMs;
+    }
+
+    /**
+     * 当前是否因限流处于退避期。
+     */
+    public synchronized boolean isPaused() {
+        return pausedUntilMs > SystemClock.elapsedRealtime();
+    }
+
+    public synchronized int getQueueLength() {
+        return waiters.size();
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    static boolean isThrottled(int code) {
+        return code == 429 || code == 503;
+    }
+
+    /**
+     * 解析 Retry-After：秒数或 HTTP 日期，无法解析时返回 -1。
+     */
+    static long parseRetryAfter(String value, long nowMs) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(trimmed)));
+        } catch (NumberFormatException ignored) {
+            // 不是秒数，再按 HTTP 日期解析
+        }
+        SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        try {
+            Date date = httpDate.parse(trimmed);
+            return date != null ? Math.max(0, date.getTime() - nowMs) : -1;
+        } catch (ParseException e) {
+            Log.w(TAG, "Unparseable Retry-After: " + value);
+            return -1;
+        }
+    }
+
+    private void refill(long now) {
+        if (now > lastRefillMs) {
+            tokens = Math.min(capacity, tokens + (now - lastRefillMs) * tokensPerMs);
+            lastRefillMs = now;
+        }
+    }
+
+    private static final class Waiter implements Comparable<Waiter> {
+        final Priority priority;
+        final long sequence;
+
+        Waiter(Priority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = Integer.compare(priority.ordinal(), other.priority.ordinal());
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.fitnesee;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * food_nutrients 缓存的紧凑二进制快照，随 Auto Backup 一起备份。
+ * 新设备或重装后数据库为空时，从快照（内存映射读取）批量恢复已学习过的食物，无需再逐个请求接口。
+ *
+ * 文件格式（大端序）：
+ * <pre>
+ * int   magic  "FDS1"
+ * int   version
+ * int   count
+ * int   namesLength            名称区总字节数
+ * int[count]   nameOffsets     每个名称在名称区中的起始偏移，按名称 UTF-8 字节序排序
+ * float[count*4] macros        calories, protein, fat, carb
+ * byte[namesLength] names      UTF-8 名称依次拼接
+ * </pre>
+ */
+public final class FoodCacheSnapshot {
+    private static final String TAG = "FoodCacheSnapshot";
+    static final String FILE_NAME = "food_cache.bin";
+    private static final int MAGIC = 0x46445331; // "FDS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    // 一次提交中学到的多个食物合并为一次写盘
+    private static final long WRITE_DELAY_MS = 2000;
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private static ScheduledFuture<?> pendingWrite;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int namesLength;
+    private final int macrosStart;
+    private final int namesStart;
+
+    private FoodCacheSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a food cache snapshot");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        count = buffer.getInt(8);
+        namesLength = buffer.getInt(12);
+        macrosStart = HEADER_SIZE + count * 4;
+        namesStart = macrosStart + count * 16;
+        if (count < 0 || namesLength < 0 || (long) namesStart + namesLength > buffer.capacity()) {
+            throw new IOException("Corrupted snapshot: count=" + count + ", namesLength=" + namesLength);
+        }
+    }
+
+    /**
+     * 以只读内存映射方式打开快照，不把整个文件读入堆内存。
+     */
+    public static FoodCacheSnapshot open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new FoodCacheSnapshot(mapped);
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public String nameAt(int index) {
+        int start = buffer.getInt(HEADER_SIZE + index * 4);
+        int end = index + 1 < count ? buffer.getInt(HEADER_SIZE + (index + 1) * 4) : namesLength;
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(namesStart + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public float caloriesAt(int index) {
+        return buffer.getFloat(macrosStart + index * 16);
+    }
+
+    public float proteinAt(int index) {
+        return buffer.getFloat(macrosStart + index * 16 + 4);
+    }
+
+    public float fatAt(int index) {
+        return buffer.getFloat(macrosStart + index * 16 + 8);
+    }
+
+    public float carbAt(int index) {
+        return buffer.getFloat(macrosStart + index * 16 + 12);
+    }
+
+    /**
+     * 按名称二分查找，返回下标，不存在时返回 -1。
+     */
+    public int indexOf(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareNameAt(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareNameAt(int index, byte[] key) {
+        int start = buffer.getInt(HEADER_SIZE + index * 4);
+        int end = index + 1 < count ? buffer.getInt(HEADER_SIZE + (index + 1) * 4) : namesLength;
+        int length = end - start;
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int a = buffer.get(namesStart + start + i) & 0xff;
+            int b = key[i] & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * 新学到食物后调用：短暂延迟后在后台把整个 food_nutrients 写成快照，多次调用合并为一次写盘。
+     */
+    public static synchronized void scheduleWrite(Context context) {
+        if (pendingWrite != null && !pendingWrite.isDone()) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        pendingWrite = executor.schedule(() -> {
+            try {
+                write(appContext);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to write food cache snapshot: " + e.getMessage(), e);
+            }
+        }, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    static void write(Context context) throws IOException {
+        long start = System.currentTimeMillis();
+        List<byte[]> names = new ArrayList<>();
+        List<float[]> macros = new ArrayList<>();
+        NutritionDatabase nutritionDb = new NutritionDatabase(context);
+        SQLiteDatabase db = nutritionDb.getReadableDatabase();
+        try (Cursor cursor = db.query(NutritionDatabase.TABLE_FOOD,
+                new String[]{NutritionDatabase.COLUMN_NAME, NutritionDatabase.COLUMN_CALORIES, NutritionDatabase.COLUMN_PROTEIN,
+                        NutritionDatabase.COLUMN_FAT, NutritionDatabase.COLUMN_CARB},
+                // 同名记录可能有多条，与 NutritionDatabase 的查询一致只取最新一条
+                NutritionDatabase.COLUMN_ID + " IN (SELECT MAX(" + NutritionDatabase.COLUMN_ID + ") FROM " + NutritionDatabase.TABLE_FOOD +
+                        " GROUP BY " + NutritionDatabase.COLUMN_NAME + ") AND " + NutritionDatabase.COLUMN_ESTIMATED + " = 0",
+                null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(0);
+                if (name == null || name.isEmpty()) {
+                    continue;
+                }
+                names.add(name.getBytes(StandardCharsets.UTF_8));
+                macros.add(new float[]{cursor.getFloat(1), cursor.getFloat(2), cursor.getFloat(3), cursor.getFloat(4)});
+            }
+        } finally {
+            db.close();
+            nutritionDb.close();
+        }
+        byte[] data = encode(names, macros);
+
+        // 先写临时文件再重命名，避免备份或读取到写了一半的快照
+        File target = new File(context.getFilesDir(), FILE_NAME);
+        File temp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp)) {
+            fos.write(data);
+            fos.getFD().sync();
+        }
+        if (!temp.renameTo(target)) {
+            throw new IOException("Failed to move snapshot into place");
+        }
+        Log.d(TAG, "Wrote food cache snapshot: " + names.size() + " foods, " + data.length + " bytes in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * 把 UTF-8 名称与对应的 {calories, protein, fat, carb} 编码为快照文件内容。
+     */
+    static byte[] encode(List<byte[]> names, List<float[]> macros) {
+        // 按 UTF-8 字节序排序，与 indexOf 的比较方式一致
+        Integer[] order = new Integer[names.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compareBytes(names.get(a), names.get(b)));
+
+        int count = order.length;
+        int namesLength = 0;
+        for (byte[] name : names) {
+            namesLength += name.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + count * 4 + count * 16 + namesLength);
+        out.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(namesLength);
+        int offset = 0;
+        for (int i : order) {
+            out.putInt(offset);
+            offset += names.get(i).length;
+        }
+        for (int i : order) {
+            for (float value : macros.get(i)) {
+                out.putFloat(value);
+            }
+        }
+        for (int i : order) {
+            out.put(names.get(i));
+        }
+        return out.array();
+    }
+
+    /**
+     * 数据库中没有任何缓存食物但存在快照时（新设备恢复备份、重装后）从快照恢复，返回恢复的食物数。
+     * 由 StartupWarmup 在后台调用。
+     */
+    static int restore(Context context) throws IOException {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        if (!file.exists()) {
+            return 0;
+        }
+        NutritionDatabase nutritionDb = new NutritionDatabase(context);
+        SQLiteDatabase db = nutritionDb.getWritableDatabase();
+        try {
+            if (DatabaseUtils.queryNumEntries(db, NutritionDatabase.TABLE_FOOD) > 0) {
+                return 0;
+            }
+            long start = System.currentTimeMillis();
+            FoodCacheSnapshot snapshot = open(file);
+            SQLiteStatement insert = db.compileStatement("INSERT INTO " + NutritionDatabase.TABLE_FOOD + " (" +
+                    NutritionDatabase.COLUMN_NAME + ", " + NutritionDatabase.COLUMN_CALORIES + ", " + NutritionDatabase.COLUMN_PROTEIN + ", " +
+                    NutritionDatabase.COLUMN_FAT + ", " + NutritionDatabase.COLUMN_CARB + ") VALUES (?, ?, ?, ?, ?)");
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < snapshot.size(); i++) {
+                    insert.clearBindings();
+                    insert.bindString(1, snapshot.nameAt(i));
+                    insert.bindDouble(2, snapshot.caloriesAt(i));
+                    insert.bindDouble(3, snapshot.proteinAt(i));
+                    insert.bindDouble(4, snapshot.fatAt(i));
+                    insert.bindDouble(5, snapshot.carbAt(i));
+                    insert.executeInsert();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                insert.close();
+            }
+            Log.i(TAG, "Restored " + snapshot.size() + " foods from snapshot in " + (System.currentTimeMillis() - start) + " ms");
+            return snapshot.size();
+        } finally {
+            db.close();
+            nutritionDb.close();
+        }
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            int diff = (a[i] & 0xff) - (b[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+}
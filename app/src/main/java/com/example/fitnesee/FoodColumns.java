@@ -0,0 +1,187 @@
+package com.example.fitnesee;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按列存储的一组食物营养数据：热量和三大营养素各占一个 float 数组，餐次保存为序号，
+ * 食物名称在本对象内去重为整数 ID（同一天重复的食物只存一份名称，对象释放后名称随之释放）。
+ * 每条记录约 21 字节，几个月的数据也只占几百 KB，汇总只需遍历一次数组。
+ */
+public final class FoodColumns {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // 默认餐次的序号固定，其余餐次（如自定义加餐）按首次出现的顺序分配
+    private static final List<String> mealTypes = new ArrayList<>(Arrays.asList("breakfast", "lunch", "dinner", "snack"));
+    private static final Map<String, Integer> mealOrdinals = new HashMap<>();
+
+    static {
+        for (int i = 0; i < mealTypes.size(); i++) {
+            mealOrdinals.put(mealTypes.get(i), i);
+        }
+    }
+
+    public static final int BREAKFAST = 0;
+    public static final int LUNCH = 1;
+    public static final int DINNER = 2;
+    public static final int SNACK = 3;
+
+    private int size;
+    private float[] calories;
+    private float[] protein;
+    private float[] fat;
+    private float[] carb;
+    private byte[] meals;
+    private int[] nameRefs;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIds = new HashMap<>();
+
+    public FoodColumns() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public FoodColumns(int capacity) {
+        capacity = Math.max(capacity, 1);
+        calories = new float[capacity];
+        protein = new float[capacity];
+        fat = new float[capacity];
+        carb = new float[capacity];
+        meals = new byte[capacity];
+        nameRefs = new int[capacity];
+    }
+
+    public static synchronized int mealOrdinal(String mealType) {
+        String key = mealType != null ? mealType : "breakfast";
+        Integer ordinal = mealOrdinals.get(key);
+        if (ordinal == null) {
+            if (mealTypes.size() >= Byte.MAX_VALUE) {
+                return BREAKFAST;
+            }
+            ordinal = mealTypes.size();
+            mealTypes.add(key);
+            mealOrdinals.put(key, ordinal);
+        }
+        return ordinal;
+    }
+
+    public static synchronized String mealType(int ordinal) {
+        return ordinal >= 0 && ordinal < mealTypes.size() ? mealTypes.get(ordinal) : "breakfast";
+    }
+
+    public static synchronized int mealTypeCount() {
+        return mealTypes.size();
+    }
+
+    private int nameId(String name) {
+        String key = name != null ? name : "";
+        Integer id = nameIds.get(key);
+        if (id == null) {
+            id = names.size();
+            names.add(key);
+            nameIds.put(key, id);
+        }
+        return id;
+    }
+
+    public void add(String name, String mealType, double calories, double protein, double fat, double carb) {
+        int nameId = nameId(name);
+        int mealOrdinal = mealOrdinal(mealType);
+        if (size == this.calories.length) {
+            grow();
+        }
+        this.calories[size] = (float) calories;
+        this.protein[size] = (float) protein;
+        this.fat[size] = (float) fat;
+        this.carb[size] = (float) carb;
+        this.meals[size] = (byte) mealOrdinal;
+        this.nameRefs[size] = nameId;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = calories.length * 2;
+        calories = Arrays.copyOf(calories, capacity);
+        protein = Arrays.copyOf(protein, capacity);
+        fat = Arrays.copyOf(fat, capacity);
+        carb = Arrays.copyOf(carb, capacity);
+        meals = Arrays.copyOf(meals, capacity);
+        nameRefs = Arrays.copyOf(nameRefs, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String nameAt(int index) {
+        return names.get(nameRefs[index]);
+    }
+
+    /**
+     * 名称在本对象内的 ID，同名记录相同；不同对象之间的 ID 不可比较。
+     */
+    public int nameIdAt(int index) {
+        return nameRefs[index];
+    }
+
+    public int mealAt(int index) {
+        return meals[index];
+    }
+
+    public float caloriesAt(int index) {
+        return calories[index];
+    }
+
+    public float proteinAt(int index) {
+        return protein[index];
+    }
+
+    public float fatAt(int index) {
+        return fat[index];
+    }
+
+    public float carbAt(int index) {
+        return carb[index];
+    }
+
+    /**
+     * 一次遍历计算总量和各餐次热量。
+     */
+    public Totals aggregate() {
+        Totals totals = new Totals(mealTypeCount());
+        double totalCalories = 0, totalProtein = 0, totalFat = 0, totalCarb = 0;
+        double[] mealCalories = totals.mealCalories;
+        for (int i = 0; i < size; i++) {
+            float c = calories[i];
+            totalCalories += c;
+            totalProtein += protein[i];
+            totalFat += fat[i];
+            totalCarb += carb[i];
+            int meal = meals[i];
+            if (meal < mealCalories.length) {
+                mealCalories[meal] += c;
+            }
+        }
+        totals.calories = totalCalories;
+        totals.protein = totalProtein;
+        totals.fat = totalFat;
+        totals.carb = totalCarb;
+        return totals;
+    }
+
+    public static final class Totals {
+        public double calories, protein, fat, carb;
+        // 按餐次序号索引
+        public final double[] mealCalories;
+
+        Totals(int mealTypeCount) {
+            mealCalories = new double[mealTypeCount];
+        }
+
+        public double mealCalories(int ordinal) {
+            return ordinal < mealCalories.length ? mealCalories[ordinal] : 0;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.example.fitnesee;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 饮食日志、食物营养缓存与个人信息的导出/导入。
+ * 导出时逐行从游标写入缓冲流，导入时逐行解析并分批在事务中插入，内存占用与记录总数无关。
+ * 支持两种格式：CSV（首列为记录类型）和 JSON Lines（每行一个对象，字段 type 为记录类型）。
+ * 导入会跳过已存在的记录（日志按日期+时间+食物+餐次，食物按名称），重复导入同一文件不会产生重复数据。
+ * 日志记录带有年份的日期列（yyyyMMdd）；旧版本导出的文件没有这一列，导入时按导入当天推断年份。
+ */
+public final class HistoryTransfer {
+    private static final String TAG = "HistoryTransfer";
+    private static final String HEADER = "# fitnesee export v1";
+    private static final String PROFILE_PREFS = "UserProfile";
+    // 每个事务提交的行数：足够大以摊薄提交开销，又不会让单个事务长时间占用数据库
+    private static final int BATCH_SIZE = 1000;
+
+    static final String TYPE_LOG = "log";
+    static final String TYPE_FOOD = "food";
+    static final String TYPE_PROFILE = "profile";
+
+    public enum Format {
+        CSV("text/csv", ".csv"),
+        JSON_LINES("application/x-ndjson", ".jsonl");
+
+        public final String mimeType;
+        public final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+    }
+
+    public static final class Result {
+        public int logs;
+        public int foods;
+        public int profiles;
+        public int skipped;
+
+        @Override
+        public String toString() {
+            return "日志 " + logs + " 条，食物 " + foods + " 种，个人信息 " + profiles + " 份" +
+                    (skipped > 0 ? "，跳过 " + skipped + " 条" : "");
+        }
+    }
+
+    private final Context context;
+    private final NutritionDatabase nutritionDb;
+
+    public HistoryTransfer(Context context, NutritionDatabase nutritionDb) {
+        this.context = context.getApplicationContext();
+        this.nutritionDb = nutritionDb;
+    }
+
+    public Result export(OutputStream out, Format format) throws IOException {
+        Result result = new Result();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        long start = System.currentTimeMillis();
+        SQLiteDatabase db = nutritionDb.getReadableDatabase();
+        try {
+            if (format == Format.CSV) {
+                writer.write(HEADER);
+                writer.write('\n');
+            }
+            try (Cursor cursor = db.query(NutritionDatabase.TABLE_LOG,
+                    new String[]{NutritionDatabase.LOG_TIMESTAMP, NutritionDatabase.LOG_FOOD_NAME, NutritionDatabase.LOG_GRAMS, NutritionDatabase.LOG_MEAL_TYPE,
+                            NutritionDatabase.LOG_DAY},
+                    null, null, null, null, NutritionDatabase.COLUMN_ID + " ASC")) {
+                while (cursor.moveToNext()) {
+                    String day = cursor.isNull(4) ? null : String.valueOf(cursor.getInt(4));
+                    if (format == Format.CSV) {
+                        writeCsvRow(writer, TYPE_LOG, cursor.getString(0), cursor.getString(1), formatNumber(cursor.getDouble(2)), cursor.getString(3), day);
+                    } else {
+                        writer.write("{\"type\":\"log\",\"timestamp\":" + JSONObject.quote(cursor.getString(0)) +
+                                ",\"food_name\":" + JSONObject.quote(cursor.getString(1)) +
+                                ",\"grams\":" + formatNumber(cursor.getDouble(2)) +
+                                ",\"meal_type\":" + JSONObject.quote(cursor.getString(3)) +
+                                ",\"day\":" + day + "}\n");
+                    }
+                    result.logs++;
+                }
+            }
+            try (Cursor cursor = db.query(NutritionDatabase.TABLE_FOOD,
+                    new String[]{NutritionDatabase.COLUMN_NAME, NutritionDatabase.COLUMN_PROTEIN, NutritionDatabase.COLUMN_FAT,
+                            NutritionDatabase.COLUMN_CARB, NutritionDatabase.COLUMN_CALORIES},
+                    NutritionDatabase.COLUMN_ESTIMATED + " = 0", null, null, null, NutritionDatabase.COLUMN_ID + " ASC")) {
+                while (cursor.moveToNext()) {
+                    if (format == Format.CSV) {
+                        writeCsvRow(writer, TYPE_FOOD, cursor.getString(0), formatNumber(cursor.getDouble(1)),
+                                formatNumber(cursor.getDouble(2)), formatNumber(cursor.getDouble(3)), formatNumber(cursor.getDouble(4)));
+                    } else {
+                        writer.write("{\"type\":\"food\",\"name\":" + JSONObject.quote(cursor.getString(0)) +
+                                ",\"protein\":" + formatNumber(cursor.getDouble(1)) +
+                                ",\"fat\":" + formatNumber(cursor.getDouble(2)) +
+                                ",\"carb\":" + formatNumber(cursor.getDouble(3)) +
+                                ",\"calories\":" + formatNumber(cursor.getDouble(4)) + "}\n");
+                    }
+                    result.foods++;
+                }
+            }
+        } finally {
+            db.close();
+        }
+
+        // 个人信息以 ProfileActivity 保存的 SharedPreferences 为准
+        SharedPreferences prefs = context.getSharedPreferences(PROFILE_PREFS, Context.MODE_PRIVATE);
+        if (prefs.getFloat("weight", 0f) > 0) {
+            String weight = formatNumber(prefs.getFloat("weight", 0f));
+            String height = formatNumber(prefs.getFloat("height", 0f));
+            String age = String.valueOf(prefs.getInt("age", 0));
+            String genderIndex = String.valueOf(prefs.getInt("genderIndex", 0));
+            String goalIndex = String.valueOf(prefs.getInt("goalIndex", 0));
+            if (format == Format.CSV) {
+                writeCsvRow(writer, TYPE_PROFILE, weight, height, age, genderIndex, goalIndex);
+            } else {
+                writer.write("{\"type\":\"profile\",\"weight\":" + weight + ",\"height\":" + height + ",\"age\":" + age +
+                        ",\"genderIndex\":" + genderIndex + ",\"goalIndex\":" + goalIndex + "}\n");
+            }
+            result.profiles++;
+        }
+        writer.flush();
+        Log.d(TAG, "Exported " + result + " as " + format + " in " + (System.currentTimeMillis() - start) + " ms");
+        return result;
+    }
+
+    /**
+     * 导入文件，格式根据首个非空字符自动识别（'{' 为 JSON Lines，否则为 CSV）。
+     */
+    public Result importFrom(InputStream in) throws IOException {
+        Result result = new Result();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        long start = System.currentTimeMillis();
+        Date now = new Date();
+        SQLiteDatabase db = nutritionDb.getWritableDatabase();
+        SQLiteStatement insertLog = db.compileStatement("INSERT INTO " + NutritionDatabase.TABLE_LOG + " (" +
+                NutritionDatabase.LOG_TIMESTAMP + ", " + NutritionDatabase.LOG_FOOD_NAME + ", " + NutritionDatabase.LOG_GRAMS + ", " +
+                NutritionDatabase.LOG_MEAL_TYPE + ", " + NutritionDatabase.LOG_DAY + ") SELECT ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM " +
+                NutritionDatabase.TABLE_LOG + " WHERE " + NutritionDatabase.LOG_TIMESTAMP + " = ? AND " + NutritionDatabase.LOG_FOOD_NAME +
+                " = ? AND " + NutritionDatabase.LOG_MEAL_TYPE + " IS ? AND " + NutritionDatabase.LOG_DAY + " = ?)");
+        SQLiteStatement insertFood = db.compileStatement("INSERT INTO " + NutritionDatabase.TABLE_FOOD + " (" +
+                NutritionDatabase.COLUMN_NAME + ", " + NutritionDatabase.COLUMN_PROTEIN + ", " + NutritionDatabase.COLUMN_FAT + ", " +
+                NutritionDatabase.COLUMN_CARB + ", " + NutritionDatabase.COLUMN_CALORIES + ") SELECT ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM " +
+                NutritionDatabase.TABLE_FOOD + " WHERE " + NutritionDatabase.COLUMN_NAME + " = ?)");
+        int pending = 0;
+        Format format = null;
+        db.beginTransaction();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (format == null) {
+                    format = line.trim().startsWith("{") ? Format.JSON_LINES : Format.CSV;
+                }
+                String[] record;
+                if (format == Format.CSV) {
+                    // 带引号的字段中可能包含换行，引号未闭合时继续读取下一行
+                    while (!quotesBalanced(line)) {
+                        String next = reader.readLine();
+                        if (next == null) {
+                            break;
+                        }
+                        line = line + "\n" + next;
+                    }
+                    record = parseCsvLine(line);
+                } else {
+                    record = parseJsonLine(line);
+                }
+                if (record == null || !importRecord(record, insertLog, insertFood, result, now)) {
+                    result.skipped++;
+                }
+                if (++pending >= BATCH_SIZE) {
+                    db.setTransactionSuccessful();
+                    db.endTransaction();
+                    db.beginTransaction();
+                    pending = 0;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insertLog.close();
+            insertFood.close();
+            db.close();
+        }
+        Log.d(TAG, "Imported " + result + " in " + (System.currentTimeMillis() - start) + " ms");
+        return result;
+    }
+
+    private boolean importRecord(String[] record, SQLiteStatement insertLog, SQLiteStatement insertFood, Result result, Date now) {
+        try {
+            switch (record[0]) {
+                case TYPE_LOG:
+                    if (record.length < 5 || record[1] == null || record[2] == null) {
+                        return false;
+                    }
+                    int day = record.length > 5 && record[5] != null ? Integer.parseInt(record[5])
+                            : NutritionDatabase.inferDayKey(record[1], now);
+                    if (day <= 0) {
+                        return false;
+                    }
+                    insertLog.clearBindings();
+                    insertLog.bindString(1, record[1]);
+                    insertLog.bindString(2, record[2]);
+                    insertLog.bindDouble(3, toDouble(record[3]));
+                    bindNullable(insertLog, 4, record[4]);
+                    insertLog.bindLong(5, day);
+                    insertLog.bindString(6, record[1]);
+                    insertLog.bindString(7, record[2]);
+                    bindNullable(insertLog, 8, record[4]);
+                    insertLog.bindLong(9, day);
+                    if (insertLog.executeInsert() == -1) {
+                        return false;
+                    }
+                    result.logs++;
+                    return true;
+                case TYPE_FOOD:
+                    if (record.length < 6 || record[1] == null) {
+                        return false;
+                    }
+                    insertFood.clearBindings();
+                    insertFood.bindString(1, record[1]);
+                    insertFood.bindDouble(2, toDouble(record[2]));
+                    insertFood.bindDouble(3, toDouble(record[3]));
+                    insertFood.bindDouble(4, toDouble(record[4]));
+                    insertFood.bindDouble(5, toDouble(record[5]));
+                    insertFood.bindString(6, record[1]);
+                    if (insertFood.executeInsert() == -1) {
+                        return false;
+                    }
+                    result.foods++;
+                    return true;
+                case TYPE_PROFILE:
+                    if (record.length < 6) {
+                        return false;
+                    }
+                    context.getSharedPreferences(PROFILE_PREFS, Context.MODE_PRIVATE).edit()
+                            .putFloat("weight", (float) toDouble(record[1]))
+                            .putFloat("height", (float) toDouble(record[2]))
+                            .putInt("age", Integer.parseInt(record[3]))
+                            .putInt("genderIndex", Integer.parseInt(record[4]))
+                            .putInt("goalIndex", Integer.parseInt(record[5]))
+                            .apply();
+                    result.profiles++;
+                    return true;
+                default:
+                    Log.w(TAG, "Unknown record type: " + record[0]);
+                    return false;
+            }
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Invalid number in " + record[0] + " record: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static double toDouble(String value) {
+        if (value == null) {
+            throw new NumberFormatException("empty value");
+        }
+        return Double.parseDouble(value);
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static String[] parseJsonLine(String line) {
+        try {
+            JSONObject json = new JSONObject(line);
+            String type = json.optString("type");
+            switch (type) {
+                case TYPE_LOG:
+                    return new String[]{type, optNullable(json, "timestamp"), optNullable(json, "food_name"),
+                            json.optString("grams", "0"), optNullable(json, "meal_type"), optNullable(json, "day")};
+                case TYPE_FOOD:
+                    return new String[]{type, optNullable(json, "name"), json.optString("protein", "0"),
+                            json.optString("fat", "0"), json.optString("carb", "0"), json.optString("calories", "0")};
+                case TYPE_PROFILE:
+                    return new String[]{type, json.optString("weight", "0"), json.optString("height", "0"),
+                            json.optString("age", "0"), json.optString("genderIndex", "0"), json.optString("goalIndex", "0")};
+                default:
+                    return new String[]{type};
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Skipping malformed JSON line: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static String optNullable(JSONObject json, String key) {
+        return json.isNull(key) ? null : json.optString(key);
+    }
+
+    private static void writeCsvRow(Writer writer, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escapeCsv(fields[i]));
+        }
+        writer.write('\n');
+    }
+
+    static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static boolean quotesBalanced(String line) {
+        int quotes = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes % 2 == 0;
+    }
+
+    /**
+     * 解析一行 CSV（RFC 4180 引号规则），空字段解析为 null。
+     */
+    static String[] parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>(6);
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.length() == 0 && !quoted ? null : field.toString());
+                field.setLength(0);
+                quoted = false;
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        fields.add(field.length() == 0 && !quoted ? null : field.toString());
+        if (fields.get(0) == null) {
+            return null;
+        }
+        return fields.toArray(new String[0]);
+    }
+
+    private static String formatNumber(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+}
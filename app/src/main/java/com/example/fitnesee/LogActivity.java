@@ -1,45 +1,46 @@
 package com.example.fitnesee;
 
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.view.ViewGroup;
-import android.widget.BaseExpandableListAdapter;
-import android.widget.ExpandableListView;
 import android.widget.TextView;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Locale;
-import java.util.TimeZone;
-import java.util.TreeMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class LogActivity extends AppCompatActivity {
 
     private static final String TAG = "LogActivity";
     private NutritionDatabase db;
-    private ExpandableListView expandableLogList;
+    private RecyclerView logRecyclerView;
+    private TextView stickyDayHeader;
+    private TextView emptyLogText;
     private com.google.android.material.button.MaterialButton backToMealInputButton;
-    private SimpleDateFormat dateFormat; // 修改为 MM月dd日 格式
-    private SimpleDateFormat timestampFormat;
+    private LogPagingAdapter adapter;
+    private LinearLayoutManager layoutManager;
+    private final ExecutorService transferExecutor = Executors.newSingleThreadExecutor();
+    private ActivityResultLauncher<String> exportCsvLauncher;
+    private ActivityResultLauncher<String> exportJsonLinesLauncher;
+    private ActivityResultLauncher<String[]> importLauncher;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_log);
 
-        // 初始化时间格式
-        dateFormat = new SimpleDateFormat("MM月dd日", Locale.getDefault()); // 只显示月日
-        dateFormat.setTimeZone(TimeZone.getTimeZone("Asia/Shanghai"));
-        timestampFormat = NutritionDatabase.timestampFormat; // 复用 NutritionDatabase 中的 MM月dd日 HH:mm:ss
-
         // 初始化数据库
         try {
             db = new NutritionDatabase(this);
@@ -51,88 +52,63 @@ public class LogActivity extends AppCompatActivity {
         }
 
         // 获取界面组件
-        expandableLogList = findViewById(R.id.expandableLogList);
+        logRecyclerView = findViewById(R.id.logRecyclerView);
+        stickyDayHeader = findViewById(R.id.stickyDayHeader);
+        emptyLogText = findViewById(R.id.emptyLogText);
         backToMealInputButton = findViewById(R.id.backToMealInputButton);
+        View exportDataButton = findViewById(R.id.exportDataButton);
+        View importDataButton = findViewById(R.id.importDataButton);
 
         // 检查视图是否为 null
-        if (expandableLogList == null || backToMealInputButton == null) {
+        if (logRecyclerView == null || stickyDayHeader == null || emptyLogText == null || backToMealInputButton == null
+                || exportDataButton == null || importDataButton == null) {
             Log.e(TAG, "One or more views are null: " +
-                    "expandableLogList=" + (expandableLogList == null) +
-                    ", backToMealInputButton=" + (backToMealInputButton == null));
+                    "logRecyclerView=" + (logRecyclerView == null) +
+                    ", stickyDayHeader=" + (stickyDayHeader == null) +
+                    ", emptyLogText=" + (emptyLogText == null) +
+                    ", backToMealInputButton=" + (backToMealInputButton == null) +
+                    ", exportDataButton=" + (exportDataButton == null) +
+                    ", importDataButton=" + (importDataButton == null));
             Toast.makeText(this, "界面初始化失败，请检查布局文件", Toast.LENGTH_LONG).show();
             finish();
             return;
         }
         Log.d(TAG, "All views initialized successfully.");
 
-        // 获取并组织日志数据
-        List<NutritionDatabase.LogEntry> logs = null;
-        try {
-            logs = db.getUploadLogs();
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to get upload logs: " + e.getMessage(), e);
-            Toast.makeText(this, "日志数据加载失败", Toast.LENGTH_SHORT).show();
-            finish();
-            return;
-        }
-
-        if (logs == null) {
-            Log.e(TAG, "getUploadLogs returned null");
-            Toast.makeText(this, "日志数据加载失败", Toast.LENGTH_SHORT).show();
-            finish();
-            return;
-        }
-
-        // 使用 TreeMap 按日期排序
-        TreeMap<String, List<NutritionDatabase.LogEntry>> logsByDate = new TreeMap<>();
-        for (NutritionDatabase.LogEntry log : logs) {
-            try {
-                if (log.timestamp == null) {
-                    Log.w(TAG, "LogEntry timestamp is null for food: " + log.foodName);
-                    continue; // 跳过时间戳为 null 的记录
-                }
-                String date = dateFormat.format(log.timestamp); // 格式化为 MM月dd日
-                logsByDate.computeIfAbsent(date, k -> new ArrayList<>()).add(log);
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to format timestamp for log entry: " + log.foodName + ", error: " + e.getMessage(), e);
-            }
-        }
-
-        // 准备 ExpandableListView 数据
-        ArrayList<String> groupList = new ArrayList<>(logsByDate.keySet());
-        HashMap<String, ArrayList<String>> childMap = new HashMap<>();
-        for (String date : groupList) {
-            ArrayList<String> childList = new ArrayList<>();
-            List<NutritionDatabase.LogEntry> entries = logsByDate.get(date);
-            if (entries != null && !entries.isEmpty()) {
-                for (NutritionDatabase.LogEntry log : entries) {
-                    String formattedTimestamp = timestampFormat.format(log.timestamp); // MM月dd日 HH:mm:ss
-                    childList.add("时间: " + formattedTimestamp + "\n" +
-                            "食物: " + log.foodName + "\n" +
-                            "克数: " + log.grams + " 克\n" +
-                            "餐类型: " + (log.mealType != null ? log.mealType : "未知"));
-                }
-            } else {
-                childList.add("无数据");
+        // 日志按页从数据库读取，只在滚动到接近底部时继续加载，不再一次性读出全部历史
+        adapter = new LogPagingAdapter(db, (totalRows, endReached) -> {
+            emptyLogText.setVisibility(totalRows == 0 ? View.VISIBLE : View.GONE);
+            updateStickyHeader();
+        });
+        layoutManager = new LinearLayoutManager(this);
+        adapter.attachTo(logRecyclerView, layoutManager);
+        logRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                updateStickyHeader();
             }
-            childMap.put(date, childList);
-        }
-
-        if (groupList.isEmpty()) {
-            groupList.add("无日志记录");
-            childMap.put("无日志记录", new ArrayList<String>() {{ add("暂无日志数据"); }});
-        }
-
-        // 设置 ExpandableListView 适配器
-        try {
-            ExpandableListAdapter adapter = new ExpandableListAdapter(this, groupList, childMap);
-            expandableLogList.setAdapter(adapter);
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to set ExpandableListAdapter: " + e.getMessage(), e);
-            Toast.makeText(this, "日志显示失败", Toast.LENGTH_SHORT).show();
-            finish();
-            return;
-        }
+        });
+        adapter.loadNextPage();
+
+        // 导出/导入通过存储访问框架选择文件，读写在后台线程流式进行
+        exportCsvLauncher = registerForActivityResult(new ActivityResultContracts.CreateDocument(HistoryTransfer.Format.CSV.mimeType),
+                uri -> exportTo(uri, HistoryTransfer.Format.CSV));
+        exportJsonLinesLauncher = registerForActivityResult(new ActivityResultContracts.CreateDocument(HistoryTransfer.Format.JSON_LINES.mimeType),
+                uri -> exportTo(uri, HistoryTransfer.Format.JSON_LINES));
+        importLauncher = registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importFrom);
+
+        exportDataButton.setOnClickListener(v -> new AlertDialog.Builder(this)
+                .setTitle("选择导出格式")
+                .setItems(new CharSequence[]{"CSV", "JSON Lines"}, (dialog, which) -> {
+                    String fileName = "fitnesee_history_" + System.currentTimeMillis();
+                    if (which == 0) {
+                        exportCsvLauncher.launch(fileName + HistoryTransfer.Format.CSV.extension);
+                    } else {
+                        exportJsonLinesLauncher.launch(fileName + HistoryTransfer.Format.JSON_LINES.extension);
+                    }
+                })
+                .show());
+        importDataButton.setOnClickListener(v -> importLauncher.launch(new String[]{"text/*", "application/*"}));
 
         // 设置返回按钮点击事件
         backToMealInputButton.setOnClickListener(new View.OnClickListener() {
@@ -146,94 +122,91 @@ public class LogActivity extends AppCompatActivity {
     }
 
     @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (db != null) {
-            try {
-                db.close();
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to close database: " + e.getMessage(), e);
-            }
-            db = null;
+    protected void onRestart() {
+        super.onRestart();
+        // 返回本页面时只查询新增的记录并插入到顶部
+        if (adapter != null) {
+            adapter.refreshNewer();
         }
     }
 
-    // 自定义 ExpandableListAdapter
-    private static class ExpandableListAdapter extends BaseExpandableListAdapter {
-        private final android.content.Context context;
-        private final ArrayList<String> groupList;
-        private final HashMap<String, ArrayList<String>> childMap;
-
-        public ExpandableListAdapter(android.content.Context context, ArrayList<String> groupList, HashMap<String, ArrayList<String>> childMap) {
-            this.context = context;
-            this.groupList = groupList;
-            this.childMap = childMap;
-        }
-
-        @Override
-        public int getGroupCount() {
-            return groupList.size();
-        }
-
-        @Override
-        public int getChildrenCount(int groupPosition) {
-            return childMap.get(groupList.get(groupPosition)).size();
-        }
-
-        @Override
-        public Object getGroup(int groupPosition) {
-            return groupList.get(groupPosition);
-        }
-
-        @Override
-        public Object getChild(int groupPosition, int childPosition) {
-            return childMap.get(groupList.get(groupPosition)).get(childPosition);
-        }
-
-        @Override
-        public long getGroupId(int groupPosition) {
-            return groupPosition;
+    private void exportTo(Uri uri, HistoryTransfer.Format format) {
+        if (uri == null) {
+            return;
         }
+        Toast.makeText(this, "正在导出…", Toast.LENGTH_SHORT).show();
+        transferExecutor.execute(() -> {
+            // 独立的连接：列表分页每次查询后都会关闭共享的 db，不能与导出共用
+            NutritionDatabase transferDb = new NutritionDatabase(getApplicationContext());
+            try (OutputStream out = getContentResolver().openOutputStream(uri)) {
+                if (out == null) {
+                    throw new IOException("Unable to open output stream for " + uri);
+                }
+                HistoryTransfer.Result result = new HistoryTransfer(this, transferDb).export(out, format);
+                runOnUiThread(() -> Toast.makeText(this, "已导出：" + result, Toast.LENGTH_LONG).show());
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to export history: " + e.getMessage(), e);
+                runOnUiThread(() -> Toast.makeText(this, "导出失败: " + e.getMessage(), Toast.LENGTH_LONG).show());
+            } finally {
+                transferDb.close();
+            }
+        });
+    }
 
-        @Override
-        public long getChildId(int groupPosition, int childPosition) {
-            return childPosition;
+    private void importFrom(Uri uri) {
+        if (uri == null) {
+            return;
         }
+        Toast.makeText(this, "正在导入…", Toast.LENGTH_SHORT).show();
+        transferExecutor.execute(() -> {
+            NutritionDatabase transferDb = new NutritionDatabase(getApplicationContext());
+            try (InputStream in = getContentResolver().openInputStream(uri)) {
+                if (in == null) {
+                    throw new IOException("Unable to open input stream for " + uri);
+                }
+                HistoryTransfer.Result result = new HistoryTransfer(this, transferDb).importFrom(in);
+                runOnUiThread(() -> {
+                    Toast.makeText(this, "已导入：" + result, Toast.LENGTH_LONG).show();
+                    // 导入的记录可能早于已加载的页，重新加载列表
+                    if (!isFinishing()) {
+                        recreate();
+                    }
+                });
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to import history: " + e.getMessage(), e);
+                runOnUiThread(() -> Toast.makeText(this, "导入失败: " + e.getMessage(), Toast.LENGTH_LONG).show());
+            } finally {
+                transferDb.close();
+            }
+        });
+    }
 
-        @Override
-        public boolean hasStableIds() {
-            return false;
+    // 顶部吸附当前第一条可见记录所在的日期
+    private void updateStickyHeader() {
+        String day = adapter.getDayAt(layoutManager.findFirstVisibleItemPosition());
+        if (day == null) {
+            stickyDayHeader.setVisibility(View.GONE);
+        } else {
+            stickyDayHeader.setText(day);
+            stickyDayHeader.setVisibility(View.VISIBLE);
         }
+    }
 
-        @Override
-        public View getGroupView(int groupPosition, boolean isExpanded, View convertView, ViewGroup parent) {
-            String groupTitle = (String) getGroup(groupPosition);
-            if (convertView == null) {
-                convertView = LayoutInflater.from(context).inflate(android.R.layout.simple_expandable_list_item_1, parent, false);
-            }
-            TextView textView = convertView.findViewById(android.R.id.text1);
-            if (textView != null) {
-                textView.setText(groupTitle);
-            }
-            return convertView;
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (adapter != null) {
+            adapter.close();
+            adapter = null;
         }
-
-        @Override
-        public View getChildView(int groupPosition, int childPosition, boolean isLastChild, View convertView, ViewGroup parent) {
-            String childText = (String) getChild(groupPosition, childPosition);
-            if (convertView == null) {
-                convertView = LayoutInflater.from(context).inflate(android.R.layout.simple_list_item_1, parent, false);
-            }
-            TextView textView = convertView.findViewById(android.R.id.text1);
-            if (textView != null) {
-                textView.setText(childText);
+        transferExecutor.shutdown();
+        if (db != null) {
+            try {
+                db.close();
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to close database: " + e.getMessage(), e);
             }
-            return convertView;
-        }
-
-        @Override
-        public boolean isChildSelectable(int groupPosition, int childPosition) {
-            return true;
+            db = null;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,305 @@
+package com.example.fitnesee;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 日志列表适配器：按时间倒序分页从数据库读取，每天之前插入一个日期标题行。
+ * 列表滚动到接近底部时才加载下一页，新记录通过 refreshNewer() 就地插入到顶部，不重建整个列表。
+ */
+public class LogPagingAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+    private static final String TAG = "LogPagingAdapter";
+    static final int VIEW_TYPE_DAY = 0;
+    static final int VIEW_TYPE_ENTRY = 1;
+    private static final int PAGE_SIZE = 50;
+    // 距离底部还剩多少行时预取下一页
+    private static final int PREFETCH_DISTANCE = 15;
+
+    public interface Listener {
+        void onPageLoaded(int totalRows, boolean endReached);
+    }
+
+    private final NutritionDatabase db;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Row> rows = new ArrayList<>();
+    private final Listener listener;
+    private NutritionDatabase.LogEntry oldest;
+    private NutritionDatabase.LogEntry newest;
+    private boolean loading;
+    private boolean endReached;
+    private boolean closed;
+    // 不是今年的日期在标题中带上年份，同一月日在不同年份各有各的标题
+    private final int currentYear = NutritionDatabase.dayKey(new Date()) / 10000;
+
+    public LogPagingAdapter(NutritionDatabase db, Listener listener) {
+        this.db = db;
+        this.listener = listener;
+        setHasStableIds(true);
+    }
+
+    /**
+     * 绑定到 RecyclerView 并在滚动接近底部时自动加载下一页。
+     */
+    public void attachTo(RecyclerView recyclerView, LinearLayoutManager layoutManager) {
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setAdapter(this);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                if (layoutManager.findLastVisibleItemPosition() >= rows.size() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+    }
+
+    public void loadNextPage() {
+        if (loading || endReached || closed) {
+            return;
+        }
+        loading = true;
+        NutritionDatabase.LogEntry after = oldest;
+        loader.execute(() -> {
+            List<NutritionDatabase.LogEntry> page = db.getLogPage(after, PAGE_SIZE);
+            mainHandler.post(() -> {
+                loading = false;
+                if (closed) {
+                    return;
+                }
+                endReached = page.size() < PAGE_SIZE;
+                appendPage(page);
+                Log.d(TAG, "Loaded log page of " + page.size() + ", total rows: " + rows.size());
+                if (listener != null) {
+                    listener.onPageLoaded(rows.size(), endReached);
+                }
+            });
+        });
+    }
+
+    /**
+     * 查询比当前最新一条更新的记录并插入到列表顶部（例如从录入页返回时）。
+     */
+    public void refreshNewer() {
+        if (closed) {
+            return;
+        }
+        if (newest == null) {
+            // 之前没有任何记录：直接重新加载第一页
+            endReached = false;
+            loadNextPage();
+            return;
+        }
+        NutritionDatabase.LogEntry since = newest;
+        loader.execute(() -> {
+            List<NutritionDatabase.LogEntry> newer = db.getLogsNewerThan(since);
+            if (newer.isEmpty()) {
+                return;
+            }
+            mainHandler.post(() -> {
+                if (!closed) {
+                    prependNewer(newer);
+                }
+            });
+        });
+    }
+
+    public void close() {
+        closed = true;
+        loader.shutdownNow();
+    }
+
+    /**
+     * 返回 position 所在的日期（标题行或其下任一记录），用于顶部吸附标题。
+     */
+    public String getDayAt(int position) {
+        if (position < 0 || position >= rows.size()) {
+            return null;
+        }
+        return rows.get(position).day;
+    }
+
+    private void appendPage(List<NutritionDatabase.LogEntry> page) {
+        if (page.isEmpty()) {
+            return;
+        }
+        int start = rows.size();
+        String lastDay = start > 0 ? rows.get(start - 1).day : null;
+        for (NutritionDatabase.LogEntry entry : page) {
+            String day = dayOf(entry);
+            if (!day.equals(lastDay)) {
+                rows.add(Row.day(day));
+                lastDay = day;
+            }
+            rows.add(Row.entry(day, entry));
+        }
+        if (newest == null) {
+            newest = page.get(0);
+        }
+        oldest = page.get(page.size() - 1);
+        notifyItemRangeInserted(start, rows.size() - start);
+    }
+
+    private void prependNewer(List<NutritionDatabase.LogEntry> newer) {
+        removeExisting(newer);
+        List<Row> inserted = new ArrayList<>();
+        String lastDay = null;
+        for (NutritionDatabase.LogEntry entry : newer) {
+            String day = dayOf(entry);
+            if (!day.equals(lastDay)) {
+                inserted.add(Row.day(day));
+                lastDay = day;
+            }
+            inserted.add(Row.entry(day, entry));
+        }
+        newest = newer.get(0);
+        // 最后一组与原列表第一天相同：沿用原有标题，这部分记录插在该标题之后
+        if (!rows.isEmpty() && rows.get(0).day.equals(lastDay)) {
+            int headerIndex = inserted.size() - 1;
+            while (inserted.get(headerIndex).entry != null) {
+                headerIndex--;
+            }
+            List<Row> sameDay = new ArrayList<>(inserted.subList(headerIndex + 1, inserted.size()));
+            inserted = new ArrayList<>(inserted.subList(0, headerIndex));
+            rows.addAll(1, sameDay);
+            notifyItemRangeInserted(1, sameDay.size());
+        }
+        if (!inserted.isEmpty()) {
+            rows.addAll(0, inserted);
+            notifyItemRangeInserted(0, inserted.size());
+        }
+    }
+
+    /**
+     * 当天重复记录同一食物会更新原有行（ID 不变、时间戳变新），它会再次出现在 newer 中：
+     * 先移除列表里的旧行，以免出现重复内容和重复的稳定 ID；移除后没有记录的日期标题一并移除。
+     */
+    private void removeExisting(List<NutritionDatabase.LogEntry> newer) {
+        Set<Long> ids = new HashSet<>();
+        for (NutritionDatabase.LogEntry entry : newer) {
+            ids.add(entry.id);
+        }
+        // 从后往前：处理到某个标题时，它下面的记录已经处理完
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            Row row = rows.get(i);
+            boolean stale = row.entry != null
+                    ? ids.contains(row.entry.id)
+                    : i + 1 == rows.size() || rows.get(i + 1).entry == null;
+            if (stale) {
+                rows.remove(i);
+                notifyItemRemoved(i);
+            }
+        }
+    }
+
+    private String dayOf(NutritionDatabase.LogEntry entry) {
+        String text = entry.timestampText;
+        if (text == null) {
+            return "未知日期";
+        }
+        int space = text.indexOf(' ');
+        String day = space > 0 ? text.substring(0, space) : text;
+        int year = entry.day / 10000;
+        return year > 0 && year != currentYear ? year + "年" + day : day;
+    }
+
+    @Override
+    public int getItemCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return rows.get(position).entry == null ? VIEW_TYPE_DAY : VIEW_TYPE_ENTRY;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        Row row = rows.get(position);
+        // 日期标题用日期字符串的哈希取负，避免与记录的自增 ID 冲突
+        return row.entry != null ? row.entry.id : -1L - (row.day.hashCode() & 0x7fffffffL);
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        if (viewType == VIEW_TYPE_DAY) {
+            return new DayViewHolder(inflater.inflate(R.layout.item_log_day_header, parent, false));
+        }
+        return new EntryViewHolder(inflater.inflate(R.layout.item_log_entry, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        Row row = rows.get(position);
+        if (holder instanceof DayViewHolder) {
+            ((DayViewHolder) holder).textViewDay.setText(row.day);
+            return;
+        }
+        EntryViewHolder entryHolder = (EntryViewHolder) holder;
+        NutritionDatabase.LogEntry entry = row.entry;
+        String text = entry.timestampText;
+        int space = text != null ? text.indexOf(' ') : -1;
+        entryHolder.textViewTime.setText(space > 0 ? text.substring(space + 1) : "");
+        entryHolder.textViewFood.setText(entry.foodName);
+        entryHolder.textViewGrams.setText(entry.grams + " 克");
+        entryHolder.textViewMealType.setText(entry.mealType != null ? MealEntryViewModel.getMealLabel(entry.mealType) : "未知");
+    }
+
+    static class DayViewHolder extends RecyclerView.ViewHolder {
+        final TextView textViewDay;
+
+        DayViewHolder(View itemView) {
+            super(itemView);
+            textViewDay = itemView.findViewById(R.id.textViewDay);
+        }
+    }
+
+    static class EntryViewHolder extends RecyclerView.ViewHolder {
+        final TextView textViewTime, textViewFood, textViewGrams, textViewMealType;
+
+        EntryViewHolder(View itemView) {
+            super(itemView);
+            textViewTime = itemView.findViewById(R.id.textViewTime);
+            textViewFood = itemView.findViewById(R.id.textViewFood);
+            textViewGrams = itemView.findViewById(R.id.textViewGrams);
+            textViewMealType = itemView.findViewById(R.id.textViewMealType);
+        }
+    }
+
+    private static final class Row {
+        final String day;
+        final NutritionDatabase.LogEntry entry;
+
+        private Row(String day, NutritionDatabase.LogEntry entry) {
+            this.day = day;
+            this.entry = entry;
+        }
+
+        static Row day(String day) {
+            return new Row(day, null);
+        }
+
+        static Row entry(String day, NutritionDatabase.LogEntry entry) {
+            return new Row(day, entry);
+        }
+    }
+}
@@ -3,17 +3,22 @@ package com.example.fitnesee;
 import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.View;
 import android.widget.Button;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.splashscreen.SplashScreen;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "MainActivity";
-    private NutritionDatabase nutritionDb;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        // 启动画面期间在后台并行打开数据库、预读食物缓存、初始化网络客户端
+        SplashScreen splashScreen = SplashScreen.installSplashScreen(this);
+        StartupWarmup.start(this);
+        splashScreen.setKeepOnScreenCondition(StartupWarmup::shouldKeepSplash);
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
@@ -31,8 +36,6 @@ public class MainActivity extends AppCompatActivity {
         }
         Log.d(TAG, "All views initialized successfully.");
 
-        nutritionDb = new NutritionDatabase(this);
-
         // 设置“开始记录”按钮点击事件
         startButton.setOnClickListener(v -> {
             Intent intent = new Intent(MainActivity.this, MealEntryActivity.class);
@@ -44,14 +47,12 @@ public class MainActivity extends AppCompatActivity {
             Intent intent = new Intent(MainActivity.this, ProfileActivity.class);
             startActivity(intent);
         });
-    }
 
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (nutritionDb != null) {
-            nutritionDb.close();
-            nutritionDb = null;
+        // 调试包中显示性能指标入口
+        Button metricsButton = findViewById(R.id.metricsButton);
+        if (metricsButton != null && BuildConfig.DEBUG) {
+            metricsButton.setVisibility(View.VISIBLE);
+            metricsButton.setOnClickListener(v -> startActivity(new Intent(MainActivity.this, MetricsActivity.class)));
         }
     }
 }
\ No newline at end of file
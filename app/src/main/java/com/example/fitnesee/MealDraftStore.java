@@ -0,0 +1,130 @@
+package com.example.fitnesee;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 三餐草稿的本地持久化。修改只标记为脏，停止输入一段时间后才合并写一次盘，
+ * 写盘在后台线程进行；启动时同步读取，草稿很小，解析耗时远低于一帧。
+ */
+public class MealDraftStore {
+    private static final String TAG = "MealDraftStore";
+    private static final String PREFS_NAME = "MealDraft";
+    private static final String KEY_DRAFT = "draft";
+    private static final long SAVE_DEBOUNCE_MS = 800;
+
+    public interface SnapshotProvider {
+        Map<String, List<NutritionDatabase.MealEntry>> snapshot();
+    }
+
+    private final SharedPreferences prefs;
+    private final SnapshotProvider provider;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private final Runnable saveRunnable = this::flush;
+    private boolean dirty;
+
+    public MealDraftStore(Context context, SnapshotProvider provider) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.provider = provider;
+    }
+
+    /**
+     * 读取已保存的草稿，没有时返回空 Map。
+     */
+    public Map<String, List<NutritionDatabase.MealEntry>> load() {
+        Map<String, List<NutritionDatabase.MealEntry>> result = new LinkedHashMap<>();
+        String json = prefs.getString(KEY_DRAFT, null);
+        if (json == null || json.isEmpty()) {
+            return result;
+        }
+        try {
+            JSONObject root = new JSONObject(json);
+            Iterator<String> mealTypes = root.keys();
+            while (mealTypes.hasNext()) {
+                String mealType = mealTypes.next();
+                JSONArray items = root.getJSONArray(mealType);
+                List<NutritionDatabase.MealEntry> meals = new ArrayList<>();
+                for (int i = 0; i < items.length(); i++) {
+                    JSONObject item = items.getJSONObject(i);
+                    meals.add(new NutritionDatabase.MealEntry(item.optString("n", ""), item.optDouble("g", 0), mealType));
+                }
+                result.put(mealType, meals);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to parse saved meal draft: " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    /**
+     * 标记草稿已修改（主线程调用），在停止修改 SAVE_DEBOUNCE_MS 后合并写一次盘。
+     */
+    public void markDirty() {
+        dirty = true;
+        mainHandler.removeCallbacks(saveRunnable);
+        mainHandler.postDelayed(saveRunnable, SAVE_DEBOUNCE_MS);
+    }
+
+    /**
+     * 立即写出未保存的修改（主线程调用），例如界面进入后台时。
+     */
+    public void flush() {
+        mainHandler.removeCallbacks(saveRunnable);
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        String json = serialize(provider.snapshot());
+        writer.execute(() -> {
+            if (!prefs.edit().putString(KEY_DRAFT, json).commit()) {
+                Log.w(TAG, "Failed to persist meal draft");
+            }
+        });
+    }
+
+    public void clear() {
+        mainHandler.removeCallbacks(saveRunnable);
+        dirty = false;
+        writer.execute(() -> prefs.edit().remove(KEY_DRAFT).commit());
+    }
+
+    public void close() {
+        flush();
+        writer.shutdown();
+    }
+
+    private static String serialize(Map<String, List<NutritionDatabase.MealEntry>> draft) {
+        JSONObject root = new JSONObject();
+        try {
+            for (Map.Entry<String, List<NutritionDatabase.MealEntry>> entry : draft.entrySet()) {
+                JSONArray items = new JSONArray();
+                for (NutritionDatabase.MealEntry meal : entry.getValue()) {
+                    JSONObject item = new JSONObject();
+                    item.put("n", meal.foodName != null ? meal.foodName : "");
+                    item.put("g", meal.grams);
+                    items.put(item);
+                }
+                root.put(entry.getKey(), items);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to serialize meal draft: " + e.getMessage(), e);
+        }
+        return root.toString();
+    }
+}
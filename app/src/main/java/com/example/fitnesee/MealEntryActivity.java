@@ -10,7 +10,11 @@ import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.button.MaterialButton;
 
@@ -19,12 +23,16 @@ import com.example.fitnesee.databinding.ActivityMealEntryBinding; // 导入生
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class MealEntryActivity extends AppCompatActivity {
     private static final String TAG = "MealEntryActivity";
     private ActivityMealEntryBinding binding; // 声明绑定对象
-    private MealAdapter breakfastAdapter, lunchAdapter, dinnerAdapter;
-    private NutritionDatabase nutritionDb;
+    private static final int VIEW_TYPE_HEADER = 0;
+    private static final int VIEW_TYPE_FOOD = 1;
+    private static final int VIEW_TYPE_ADD = 2;
+    private MealAdapter mealAdapter;
+    private MealEntryViewModel viewModel;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -36,23 +44,8 @@ public class MealEntryActivity extends AppCompatActivity {
         Log.d(TAG, "Layout inflated successfully using DataBinding.");
 
         // 现在通过 binding 对象访问所有视图
-        RecyclerView recyclerViewBreakfast = binding.recyclerViewBreakfast;
-        Log.d(TAG, "recyclerViewBreakfast: " + (recyclerViewBreakfast == null ? "null" : "found"));
-
-        RecyclerView recyclerViewLunch = binding.recyclerViewLunch;
-        Log.d(TAG, "recyclerViewLunch: " + (recyclerViewLunch == null ? "null" : "found"));
-
-        RecyclerView recyclerViewDinner = binding.recyclerViewDinner;
-        Log.d(TAG, "recyclerViewDinner: " + (recyclerViewDinner == null ? "null" : "found"));
-
-        MaterialButton addBreakfastButton = binding.addBreakfastButton;
-        Log.d(TAG, "addBreakfastButton: " + (addBreakfastButton == null ? "null" : "found"));
-
-        MaterialButton addLunchButton = binding.addLunchButton;
-        Log.d(TAG, "addLunchButton: " + (addLunchButton == null ? "null" : "found"));
-
-        MaterialButton addDinnerButton = binding.addDinnerButton;
-        Log.d(TAG, "addDinnerButton: " + (addDinnerButton == null ? "null" : "found"));
+        RecyclerView recyclerViewMeals = binding.recyclerViewMeals;
+        Log.d(TAG, "recyclerViewMeals: " + (recyclerViewMeals == null ? "null" : "found"));
 
         MaterialButton submitButton = binding.submitButton;
         Log.d(TAG, "submitButton: " + (submitButton == null ? "null" : "found"));
@@ -60,71 +53,65 @@ public class MealEntryActivity extends AppCompatActivity {
         MaterialButton viewLogsButton = binding.viewLogsButton;
         Log.d(TAG, "viewLogsButton: " + (viewLogsButton == null ? "null" : "found"));
 
+        MaterialButton repeatYesterdayButton = binding.repeatYesterdayButton;
+        Log.d(TAG, "repeatYesterdayButton: " + (repeatYesterdayButton == null ? "null" : "found"));
 
-        if (recyclerViewBreakfast == null || recyclerViewLunch == null || recyclerViewDinner == null ||
-                addBreakfastButton == null || addLunchButton == null || addDinnerButton == null ||
-                submitButton == null || viewLogsButton == null) {
+
+        if (recyclerViewMeals == null || submitButton == null || viewLogsButton == null || repeatYesterdayButton == null) {
             Toast.makeText(this, "界面初始化失败，请检查布局文件或 DataBinding 配置", Toast.LENGTH_LONG).show();
             Log.e(TAG, "One or more UI components failed to initialize with DataBinding. Aborting further setup.");
             return;
         }
 
-        nutritionDb = new NutritionDatabase(this);
-
-        breakfastAdapter = new MealAdapter("breakfast");
-        lunchAdapter = new MealAdapter("lunch");
-        dinnerAdapter = new MealAdapter("dinner");
-
-        recyclerViewBreakfast.setLayoutManager(new LinearLayoutManager(this));
-        recyclerViewLunch.setLayoutManager(new LinearLayoutManager(this));
-        recyclerViewDinner.setLayoutManager(new LinearLayoutManager(this));
-        recyclerViewBreakfast.setAdapter(breakfastAdapter);
-        recyclerViewLunch.setAdapter(lunchAdapter);
-        recyclerViewDinner.setAdapter(dinnerAdapter);
-
-        addBreakfastButton.setOnClickListener(v -> breakfastAdapter.addFood());
-        addLunchButton.setOnClickListener(v -> lunchAdapter.addFood());
-        addDinnerButton.setOnClickListener(v -> dinnerAdapter.addFood());
+        // 草稿与分析任务由 ViewModel 持有，配置变更后继续沿用
+        viewModel = new ViewModelProvider(this).get(MealEntryViewModel.class);
+
+        // 所有餐次放在同一个 RecyclerView 中，食物行在各餐次之间复用，条目越多也只创建一屏的视图
+        mealAdapter = new MealAdapter();
+        recyclerViewMeals.setLayoutManager(new LinearLayoutManager(this));
+        recyclerViewMeals.getRecycledViewPool().setMaxRecycledViews(VIEW_TYPE_FOOD, 10);
+        recyclerViewMeals.setAdapter(mealAdapter);
+        viewModel.getDraft().observe(this, draft -> mealAdapter.submitList(buildRows(draft)));
+
+        repeatYesterdayButton.setOnClickListener(v -> viewModel.repeatYesterday(count -> {
+            if (count == 0) {
+                Toast.makeText(this, "昨天没有饮食记录", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, "已添加昨天的 " + count + " 种食物", Toast.LENGTH_SHORT).show();
+            }
+        }));
 
         submitButton.setOnClickListener(v -> {
-            List<NutritionDatabase.MealEntry> meals = new ArrayList<>();
-            meals.addAll(breakfastAdapter.getMeals());
-            meals.addAll(lunchAdapter.getMeals());
-            meals.addAll(dinnerAdapter.getMeals());
+            List<NutritionDatabase.MealEntry> meals = viewModel.getValidMeals();
 
             if (meals.isEmpty()) {
                 Toast.makeText(this, "请至少输入一种食物", Toast.LENGTH_SHORT).show();
                 return;
             }
 
-            nutritionDb.fetchDailyFoodData(meals, new NutritionDatabase.OnDailyDataFetchedListener() {
-                @Override
-                public void onDataFetched(NutritionDatabase.DailyFoodData dailyFoodData, double totalCalories, double totalProtein, double totalFat, double totalCarb, double recommendedCalories, String advice) {
-                    StringBuilder result = new StringBuilder();
-                    result.append("每日摄入总热量：").append(String.format("%.1f", totalCalories)).append(" 千卡\n");
-                    result.append("蛋白质：").append(String.format("%.1f", totalProtein)).append(" 克\n");
-                    result.append("脂肪：").append(String.format("%.1f", totalFat)).append(" 克\n");
-                    result.append("碳水化合物：").append(String.format("%.1f", totalCarb)).append(" 克\n");
-                    result.append("推荐热量：").append(String.format("%.1f", recommendedCalories)).append(" 千卡\n\n");
-                    result.append("早餐热量：").append(String.format("%.1f", dailyFoodData.breakfastCalories)).append(" 千卡\n");
-                    result.append("午餐热量：").append(String.format("%.1f", dailyFoodData.lunchCalories)).append(" 千卡\n");
-                    result.append("晚餐热量：").append(String.format("%.1f", dailyFoodData.dinnerCalories)).append(" 千卡\n\n");
-                    result.append(advice);
-
-                    Intent intent = new Intent(MealEntryActivity.this, ResultActivity.class);
-                    intent.putExtra("RESULT_TYPE", "DAILY_DATA");
-                    intent.putExtra("DAILY_RESULT", result.toString());
-                    startActivity(intent);
-                }
+            PerfMetrics.get().beginAsync(PerfMetrics.STAGE_SUBMIT_TO_RESULT);
+            viewModel.submit(meals);
+        });
 
-                @Override
-                public void onError(String errorMessage) {
-                    Intent intent = new Intent(MealEntryActivity.this, ResultActivity.class);
-                    intent.putExtra("RESULT_TYPE", "ERROR");
-                    intent.putExtra("ERROR_MESSAGE", "错误: " + errorMessage);
-                    startActivity(intent);
-                }
-            });
+        viewModel.getAnalysisState().observe(this, state -> {
+            boolean running = state.status == MealEntryViewModel.AnalysisState.Status.RUNNING;
+            submitButton.setEnabled(!running);
+            submitButton.setText(running ? "分析中…" : "提交");
+
+            if (state.status == MealEntryViewModel.AnalysisState.Status.SUCCESS) {
+                // 结构化结果已在会话缓存中，Intent 只携带 ID
+                Intent intent = new Intent(MealEntryActivity.this, ResultActivity.class);
+                intent.putExtra("RESULT_TYPE", "DAILY_DATA");
+                intent.putExtra("RESULT_ID", state.resultId);
+                startActivity(intent);
+                viewModel.onResultConsumed();
+            } else if (state.status == MealEntryViewModel.AnalysisState.Status.ERROR) {
+                Intent intent = new Intent(MealEntryActivity.this, ResultActivity.class);
+                intent.putExtra("RESULT_TYPE", "ERROR");
+                intent.putExtra("ERROR_MESSAGE", "错误: " + state.errorMessage);
+                startActivity(intent);
+                viewModel.onResultConsumed();
+            }
         });
 
         viewLogsButton.setOnClickListener(v -> {
@@ -133,29 +120,134 @@ public class MealEntryActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (viewModel != null) {
+            viewModel.flushDraft();
+        }
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (nutritionDb != null) {
-            nutritionDb.close();
-        }
         binding = null; // 解除绑定，避免内存泄漏
     }
 
-    // MealAdapter 内部类保持不变
-    private class MealAdapter extends RecyclerView.Adapter<MealAdapter.ViewHolder> {
-        private final List<NutritionDatabase.MealEntry> meals = new ArrayList<>();
-        private final String mealType;
+    /**
+     * 把按餐次分组的草稿展开为列表条目：每个餐次依次为标题、食物行、添加按钮。
+     */
+    private static List<MealRow> buildRows(Map<String, List<MealItem>> draft) {
+        List<MealRow> rows = new ArrayList<>();
+        int section = 0;
+        for (Map.Entry<String, List<MealItem>> entry : draft.entrySet()) {
+            String mealType = entry.getKey();
+            // 标题和添加按钮使用负数 ID，不会与食物行的 ID 冲突；从 -2 开始，-1 是 RecyclerView.NO_ID
+            rows.add(new MealRow(VIEW_TYPE_HEADER, -(2L * section + 2), mealType, null, 0));
+            List<MealItem> meals = entry.getValue();
+            for (int i = 0; i < meals.size(); i++) {
+                rows.add(new MealRow(VIEW_TYPE_FOOD, meals.get(i).id, mealType, meals.get(i), i));
+            }
+            rows.add(new MealRow(VIEW_TYPE_ADD, -(2L * section + 3), mealType, null, 0));
+            section++;
+        }
+        return rows;
+    }
+
+    private static final class MealRow {
+        final int viewType;
+        final long id;
+        final String mealType;
+        final MealItem item;
+        final int indexInMeal;
 
-        MealAdapter(String mealType) {
+        MealRow(int viewType, long id, String mealType, MealItem item, int indexInMeal) {
+            this.viewType = viewType;
+            this.id = id;
             this.mealType = mealType;
+            this.item = item;
+            this.indexInMeal = indexInMeal;
+        }
+
+        boolean sameContentAs(MealRow other) {
+            if (viewType != other.viewType || indexInMeal != other.indexInMeal || !mealType.equals(other.mealType)) {
+                return false;
+            }
+            return item == null ? other.item == null : other.item != null && item.sameContentAs(other.item);
+        }
+    }
+
+    private static final String PAYLOAD_FOOD_NAME = "food_name";
+    private static final String PAYLOAD_GRAMS = "grams";
+
+    private static final DiffUtil.ItemCallback<MealRow> MEAL_DIFF = new DiffUtil.ItemCallback<MealRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MealRow oldRow, @NonNull MealRow newRow) {
+            return oldRow.id == newRow.id && oldRow.viewType == newRow.viewType;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MealRow oldRow, @NonNull MealRow newRow) {
+            return oldRow.sameContentAs(newRow);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull MealRow oldRow, @NonNull MealRow newRow) {
+            if (oldRow.item == null || newRow.item == null || oldRow.indexInMeal != newRow.indexInMeal) {
+                return null;
+            }
+            List<String> changed = new ArrayList<>(2);
+            if (!oldRow.item.foodName.equals(newRow.item.foodName)) {
+                changed.add(PAYLOAD_FOOD_NAME);
+            }
+            if (oldRow.item.grams != newRow.item.grams) {
+                changed.add(PAYLOAD_GRAMS);
+            }
+            return changed;
+        }
+    };
+
+    // 单列表适配器：条目不可变、稳定 ID，食物文本变化只做局部绑定
+    private class MealAdapter extends ListAdapter<MealRow, RecyclerView.ViewHolder> {
+
+        MealAdapter() {
+            super(MEAL_DIFF);
+            setHasStableIds(true);
+        }
+
+        class HeaderViewHolder extends RecyclerView.ViewHolder {
+            final TextView textViewMealTitle;
+
+            HeaderViewHolder(View itemView) {
+                super(itemView);
+                textViewMealTitle = itemView.findViewById(R.id.textViewMealTitle);
+            }
         }
 
-        public class ViewHolder extends RecyclerView.ViewHolder {
+        class AddViewHolder extends RecyclerView.ViewHolder {
+            final MaterialButton addFoodButton;
+            String mealType;
+
+            AddViewHolder(View itemView) {
+                super(itemView);
+                addFoodButton = itemView.findViewById(R.id.addFoodButton);
+                addFoodButton.setOnClickListener(v -> {
+                    if (mealType != null) {
+                        viewModel.addFood(mealType);
+                    }
+                });
+            }
+        }
+
+        class FoodViewHolder extends RecyclerView.ViewHolder {
             EditText editTextFoodName, editTextGrams;
             TextView textViewLabel;
+            String mealType;
+            long itemId = RecyclerView.NO_ID;
+            // 绑定过程中的 setText 不应回写到 ViewModel
+            boolean binding;
 
-            ViewHolder(View itemView) {
+            FoodViewHolder(View itemView) {
                 super(itemView);
                 editTextFoodName = itemView.findViewById(R.id.editTextFoodName);
                 editTextGrams = itemView.findViewById(R.id.editTextGrams);
@@ -167,34 +259,53 @@ public class MealEntryActivity extends AppCompatActivity {
                 editTextFoodName.addTextChangedListener(new SimpleTextWatcher() {
                     @Override
                     public void afterTextChanged(android.text.Editable s) {
-                        int position = getAdapterPosition();
-                        if (position != RecyclerView.NO_POSITION) {
-                            meals.get(position).foodName = s.toString();
-                            Log.d(TAG, "Food name updated at position " + position + ": " + s.toString());
+                        if (binding || itemId == RecyclerView.NO_ID) {
+                            return;
                         }
+                        viewModel.updateFoodName(mealType, itemId, s.toString());
                     }
                 });
 
                 editTextGrams.addTextChangedListener(new SimpleTextWatcher() {
                     @Override
                     public void afterTextChanged(android.text.Editable s) {
-                        int position = getAdapterPosition();
-                        if (position != RecyclerView.NO_POSITION) {
-                            try {
-                                double grams = s.toString().isEmpty() ? 0 : Double.parseDouble(s.toString());
-                                if (grams < 0) {
-                                    s.replace(0, s.length(), "0");
-                                    Toast.makeText(MealEntryActivity.this, "克数不能为负数", Toast.LENGTH_SHORT).show();
-                                    return;
-                                }
-                                meals.get(position).grams = grams;
-                            } catch (NumberFormatException e) {
-                                Toast.makeText(MealEntryActivity.this, "请输入有效的克数", Toast.LENGTH_SHORT).show();
+                        if (binding || itemId == RecyclerView.NO_ID) {
+                            return;
+                        }
+                        try {
+                            double grams = s.toString().isEmpty() ? 0 : Double.parseDouble(s.toString());
+                            if (grams < 0) {
+                                s.replace(0, s.length(), "0");
+                                Toast.makeText(MealEntryActivity.this, "克数不能为负数", Toast.LENGTH_SHORT).show();
+                                return;
                             }
+                            viewModel.updateGrams(mealType, itemId, grams);
+                        } catch (NumberFormatException e) {
+                            Toast.makeText(MealEntryActivity.this, "请输入有效的克数", Toast.LENGTH_SHORT).show();
                         }
                     }
                 });
             }
+
+            void bindFoodName(MealItem item) {
+                // 内容相同则不 setText，避免光标跳动与多余的 TextWatcher 回调
+                if (!item.foodName.contentEquals(editTextFoodName.getText())) {
+                    editTextFoodName.setText(item.foodName);
+                }
+            }
+
+            void bindGrams(MealItem item) {
+                String text = editTextGrams.getText().toString();
+                double shown;
+                try {
+                    shown = text.isEmpty() ? 0 : Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    shown = -1;
+                }
+                if (shown != item.grams) {
+                    editTextGrams.setText(item.grams > 0 ? String.valueOf(item.grams) : "");
+                }
+            }
         }
 
         abstract class SimpleTextWatcher implements android.text.TextWatcher {
@@ -203,39 +314,69 @@ public class MealEntryActivity extends AppCompatActivity {
         }
 
         @Override
-        public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-            View view = LayoutInflater.from(parent.getContext())
-                    .inflate(R.layout.item_meal_entry, parent, false);
-            return new ViewHolder(view);
+        public int getItemViewType(int position) {
+            return getItem(position).viewType;
         }
 
         @Override
-        public void onBindViewHolder(ViewHolder holder, int position) {
-            holder.textViewLabel.setText("食物 " + (position + 1));
-            NutritionDatabase.MealEntry meal = meals.get(position);
-            holder.editTextFoodName.setText(meal.foodName);
-            holder.editTextGrams.setText(meal.grams > 0 ? String.valueOf(meal.grams) : "");
+        public long getItemId(int position) {
+            return getItem(position).id;
         }
 
+        @NonNull
         @Override
-        public int getItemCount() {
-            return meals.size();
+        public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+            if (viewType == VIEW_TYPE_HEADER) {
+                return new HeaderViewHolder(inflater.inflate(R.layout.item_meal_header, parent, false));
+            } else if (viewType == VIEW_TYPE_ADD) {
+                return new AddViewHolder(inflater.inflate(R.layout.item_meal_add, parent, false));
+            }
+            return new FoodViewHolder(inflater.inflate(R.layout.item_meal_entry, parent, false));
         }
 
-        public void addFood() {
-            meals.add(new NutritionDatabase.MealEntry("", 0.0, mealType));
-            notifyItemInserted(meals.size() - 1);
+        @Override
+        public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+            MealRow row = getItem(position);
+            String label = MealEntryViewModel.getMealLabel(row.mealType);
+            if (holder instanceof HeaderViewHolder) {
+                ((HeaderViewHolder) holder).textViewMealTitle.setText(label);
+            } else if (holder instanceof AddViewHolder) {
+                AddViewHolder addHolder = (AddViewHolder) holder;
+                addHolder.mealType = row.mealType;
+                addHolder.addFoodButton.setText("添加" + label + "食物");
+            } else {
+                FoodViewHolder foodHolder = (FoodViewHolder) holder;
+                foodHolder.binding = true;
+                foodHolder.mealType = row.mealType;
+                foodHolder.itemId = row.item.id;
+                foodHolder.textViewLabel.setText("食物 " + (row.indexInMeal + 1));
+                foodHolder.bindFoodName(row.item);
+                foodHolder.bindGrams(row.item);
+                foodHolder.binding = false;
+            }
         }
 
-        public List<NutritionDatabase.MealEntry> getMeals() {
-            List<NutritionDatabase.MealEntry> validMeals = new ArrayList<>();
-            for (NutritionDatabase.MealEntry meal : meals) {
-                if (!meal.foodName.trim().isEmpty() && meal.grams > 0) {
-                    meal.mealType = mealType;
-                    validMeals.add(meal);
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+            if (payloads.isEmpty() || !(holder instanceof FoodViewHolder)) {
+                onBindViewHolder(holder, position);
+                return;
+            }
+            FoodViewHolder foodHolder = (FoodViewHolder) holder;
+            MealItem meal = getItem(position).item;
+            foodHolder.binding = true;
+            for (Object payload : payloads) {
+                List<String> changed = (List<String>) payload;
+                if (changed.contains(PAYLOAD_FOOD_NAME)) {
+                    foodHolder.bindFoodName(meal);
+                }
+                if (changed.contains(PAYLOAD_GRAMS)) {
+                    foodHolder.bindGrams(meal);
                 }
             }
-            return validMeals;
+            foodHolder.binding = false;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,343 @@
+package com.example.fitnesee;
+
+import android.app.Application;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.SavedStateHandle;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * MealEntryActivity 的状态持有者：保存正在录入的三餐草稿，并负责运行中的分析任务。
+ * 草稿通过 SavedStateHandle 在进程被回收后恢复，并由 MealDraftStore 持久化到本地，
+ * 下次打开页面时直接恢复；分析任务挂在 ViewModel 上，屏幕旋转等配置变更不会中断或重复发起网络请求。
+ * 输入食物名时由 NutritionPrefetcher 提前把营养数据查好放进缓存。
+ */
+public class MealEntryViewModel extends AndroidViewModel {
+    private static final String TAG = "MealEntryViewModel";
+    private static final String KEY_DRAFT = "meal_draft";
+    private static final String KEY_MEAL_TYPES = "meal_types";
+    static final String[] MEAL_TYPES = {"breakfast", "lunch", "dinner", "snack"};
+    private static final Map<String, String> MEAL_LABELS = new HashMap<>();
+
+    static {
+        MEAL_LABELS.put("breakfast", "早餐");
+        MEAL_LABELS.put("lunch", "午餐");
+        MEAL_LABELS.put("dinner", "晚餐");
+        MEAL_LABELS.put("snack", "加餐");
+        MEAL_LABELS.put("unknown", "未知");
+    }
+
+    // 每餐一份不可变列表（按餐次顺序），任何修改都会替换并整体发布，界面据此差分更新
+    private final Map<String, List<MealItem>> draft = new LinkedHashMap<>();
+    private final MutableLiveData<Map<String, List<MealItem>>> draftLive = new MutableLiveData<>();
+    private final MutableLiveData<AnalysisState> analysisState = new MutableLiveData<>(AnalysisState.idle());
+    private long nextItemId = 1;
+    private final ExecutorService analysisExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final NutritionDatabase nutritionDb;
+    private final MealDraftStore draftStore;
+    private final NutritionPrefetcher prefetcher;
+
+    public MealEntryViewModel(@NonNull Application application, @NonNull SavedStateHandle savedStateHandle) {
+        super(application);
+        nutritionDb = new NutritionDatabase(application);
+        prefetcher = new NutritionPrefetcher(application);
+        for (String mealType : MEAL_TYPES) {
+            draft.put(mealType, Collections.emptyList());
+        }
+        draftStore = new MealDraftStore(application, this::snapshotDraft);
+        Bundle savedDraft = savedStateHandle.get(KEY_DRAFT);
+        if (savedDraft != null) {
+            restoreDraft(savedDraft);
+        } else {
+            loadPersistedDraft();
+        }
+        savedStateHandle.setSavedStateProvider(KEY_DRAFT, this::saveDraft);
+        draftLive.setValue(Collections.unmodifiableMap(new LinkedHashMap<>(draft)));
+    }
+
+    /**
+     * 所有餐次的草稿，键为餐次（保持显示顺序），值为该餐的不可变食物列表。
+     */
+    public LiveData<Map<String, List<MealItem>>> getDraft() {
+        return draftLive;
+    }
+
+    public static String getMealLabel(String mealType) {
+        String label = MEAL_LABELS.get(mealType);
+        return label != null ? label : mealType;
+    }
+
+    /**
+     * 在指定餐次末尾添加一行空白食物；餐次不存在时（如自定义加餐）追加到末尾。
+     */
+    public void addFood(String mealType) {
+        List<MealItem> meals = new ArrayList<>(currentDraft(mealType));
+        meals.add(new MealItem(nextItemId++, mealType, "", 0.0));
+        publish(mealType, meals);
+    }
+
+    public void updateFoodName(String mealType, long itemId, String foodName) {
+        updateItem(mealType, itemId, item -> item.withFoodName(foodName));
+        prefetcher.onFoodNameChanged(itemId, foodName);
+    }
+
+    public void updateGrams(String mealType, long itemId, double grams) {
+        updateItem(mealType, itemId, item -> item.withGrams(grams));
+    }
+
+    /**
+     * 按餐次顺序收集所有填写完整的食物（新建的 MealEntry，可安全交给后台任务）。
+     */
+    public List<NutritionDatabase.MealEntry> getValidMeals() {
+        List<NutritionDatabase.MealEntry> meals = new ArrayList<>();
+        for (String mealType : draft.keySet()) {
+            for (MealItem item : currentDraft(mealType)) {
+                if (item.isValid()) {
+                    meals.add(item.toMealEntry());
+                }
+            }
+        }
+        return meals;
+    }
+
+    public LiveData<AnalysisState> getAnalysisState() {
+        return analysisState;
+    }
+
+    public void flushDraft() {
+        draftStore.flush();
+    }
+
+    /**
+     * 把昨天记录过的食物按餐次追加到草稿中，完成后在主线程回调追加的条数。
+     */
+    public void repeatYesterday(IntConsumer onLoaded) {
+        ioExecutor.execute(() -> {
+            Calendar yesterday = Calendar.getInstance(TimeZone.getTimeZone("Asia/Shanghai"));
+            yesterday.add(Calendar.DAY_OF_MONTH, -1);
+            List<NutritionDatabase.LogEntry> logs = nutritionDb.getLogsForDay(yesterday.getTime());
+            mainHandler.post(() -> {
+                Map<String, List<MealItem>> updated = new LinkedHashMap<>();
+                for (String mealType : draft.keySet()) {
+                    List<MealItem> meals = new ArrayList<>();
+                    for (MealItem item : currentDraft(mealType)) {
+                        if (!item.foodName.trim().isEmpty()) {
+                            meals.add(item);
+                        }
+                    }
+                    updated.put(mealType, meals);
+                }
+                for (NutritionDatabase.LogEntry log : logs) {
+                    String mealType = log.mealType == null || log.mealType.equals("unknown") ? MEAL_TYPES[0] : log.mealType;
+                    updated.computeIfAbsent(mealType, k -> new ArrayList<>()).add(new MealItem(nextItemId++, mealType, log.foodName, log.grams));
+                }
+                for (Map.Entry<String, List<MealItem>> entry : updated.entrySet()) {
+                    publish(entry.getKey(), entry.getValue());
+                }
+                onLoaded.accept(logs.size());
+            });
+        });
+    }
+
+    /**
+     * 在后台发起分析；已有任务在运行时直接返回 false，不会重复请求。
+     */
+    public boolean submit(List<NutritionDatabase.MealEntry> meals) {
+        AnalysisState current = analysisState.getValue();
+        if (current != null && current.status == AnalysisState.Status.RUNNING) {
+            Log.d(TAG, "Analysis already running, ignoring submit");
+            return false;
+        }
+        analysisState.setValue(AnalysisState.running());
+        analysisExecutor.execute(() -> nutritionDb.fetchDailyFoodData(meals, new NutritionDatabase.OnDailyDataFetchedListener() {
+            private long resultId = -1;
+
+            @Override
+            public void onDataFetched(NutritionDatabase.DailyFoodData dailyFoodData, double totalCalories, double totalProtein, double totalFat, double totalCarb, double recommendedCalories, String advice) {
+                resultId = ResultCache.put(dailyFoodData);
+                analysisState.postValue(AnalysisState.success(resultId));
+            }
+
+            @Override
+            public void onDataUpgraded(NutritionDatabase.DailyFoodData dailyFoodData) {
+                // 结果页通过 ResultCache 收到更新
+                ResultCache.update(resultId, dailyFoodData);
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                analysisState.postValue(AnalysisState.error(errorMessage));
+            }
+        }));
+        return true;
+    }
+
+    /**
+     * 界面已处理完成功/失败结果（跳转到结果页）后调用，避免重建时再次跳转。
+     */
+    public void onResultConsumed() {
+        AnalysisState current = analysisState.getValue();
+        if (current != null && current.status == AnalysisState.Status.SUCCESS) {
+            // 已提交并写入日志，本地草稿不再需要
+            draftStore.clear();
+        }
+        analysisState.setValue(AnalysisState.idle());
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        draftStore.close();
+        prefetcher.close();
+        analysisExecutor.shutdownNow();
+        ioExecutor.shutdownNow();
+        nutritionDb.close();
+    }
+
+    private List<MealItem> currentDraft(String mealType) {
+        List<MealItem> meals = draft.get(mealType);
+        return meals != null ? meals : Collections.emptyList();
+    }
+
+    private void updateItem(String mealType, long itemId, UnaryOperator<MealItem> update) {
+        List<MealItem> meals = new ArrayList<>(currentDraft(mealType));
+        for (int i = 0; i < meals.size(); i++) {
+            MealItem item = meals.get(i);
+            if (item.id == itemId) {
+                MealItem updated = update.apply(item);
+                if (updated.sameContentAs(item)) {
+                    return;
+                }
+                meals.set(i, updated);
+                publish(mealType, meals);
+                return;
+            }
+        }
+    }
+
+    private void publish(String mealType, List<MealItem> meals) {
+        draft.put(mealType, Collections.unmodifiableList(meals));
+        draftLive.setValue(Collections.unmodifiableMap(new LinkedHashMap<>(draft)));
+        draftStore.markDirty();
+    }
+
+    private Map<String, List<NutritionDatabase.MealEntry>> snapshotDraft() {
+        Map<String, List<NutritionDatabase.MealEntry>> snapshot = new LinkedHashMap<>();
+        for (String mealType : draft.keySet()) {
+            List<NutritionDatabase.MealEntry> meals = new ArrayList<>();
+            for (MealItem item : currentDraft(mealType)) {
+                // 草稿保存用户原样输入，数量解析只在提交时进行
+                meals.add(new NutritionDatabase.MealEntry(item.foodName, item.grams, item.mealType));
+            }
+            snapshot.put(mealType, meals);
+        }
+        return snapshot;
+    }
+
+    private void setDraft(String mealType, List<NutritionDatabase.MealEntry> entries) {
+        if (mealType == null || mealType.isEmpty()) {
+            return;
+        }
+        List<MealItem> meals = new ArrayList<>();
+        for (NutritionDatabase.MealEntry entry : entries) {
+            meals.add(new MealItem(nextItemId++, mealType, entry.foodName, entry.grams));
+        }
+        draft.put(mealType, Collections.unmodifiableList(meals));
+    }
+
+    private void loadPersistedDraft() {
+        try (PerfMetrics.Span ignored = PerfMetrics.get().begin(PerfMetrics.STAGE_DRAFT_RESTORE)) {
+            for (Map.Entry<String, List<NutritionDatabase.MealEntry>> entry : draftStore.load().entrySet()) {
+                setDraft(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private Bundle saveDraft() {
+        Bundle bundle = new Bundle();
+        bundle.putStringArray(KEY_MEAL_TYPES, draft.keySet().toArray(new String[0]));
+        for (String mealType : draft.keySet()) {
+            List<MealItem> meals = currentDraft(mealType);
+            String[] names = new String[meals.size()];
+            double[] grams = new double[meals.size()];
+            for (int i = 0; i < meals.size(); i++) {
+                names[i] = meals.get(i).foodName;
+                grams[i] = meals.get(i).grams;
+            }
+            bundle.putStringArray(mealType + "_names", names);
+            bundle.putDoubleArray(mealType + "_grams", grams);
+        }
+        return bundle;
+    }
+
+    private void restoreDraft(Bundle bundle) {
+        if (bundle == null) {
+            return;
+        }
+        String[] mealTypes = bundle.getStringArray(KEY_MEAL_TYPES);
+        for (String mealType : mealTypes != null ? mealTypes : MEAL_TYPES) {
+            String[] names = bundle.getStringArray(mealType + "_names");
+            double[] grams = bundle.getDoubleArray(mealType + "_grams");
+            if (names == null || grams == null || names.length != grams.length) {
+                continue;
+            }
+            List<NutritionDatabase.MealEntry> meals = new ArrayList<>();
+            for (int i = 0; i < names.length; i++) {
+                meals.add(new NutritionDatabase.MealEntry(names[i], grams[i], mealType));
+            }
+            setDraft(mealType, meals);
+        }
+        Log.d(TAG, "Restored meal draft from saved state");
+    }
+
+    public static final class AnalysisState {
+        public enum Status { IDLE, RUNNING, SUCCESS, ERROR }
+
+        public final Status status;
+        public final long resultId;
+        public final String errorMessage;
+
+        private AnalysisState(Status status, long resultId, String errorMessage) {
+            this.status = status;
+            this.resultId = resultId;
+            this.errorMessage = errorMessage;
+        }
+
+        static AnalysisState idle() {
+            return new AnalysisState(Status.IDLE, -1, null);
+        }
+
+        static AnalysisState running() {
+            return new AnalysisState(Status.RUNNING, -1, null);
+        }
+
+        static AnalysisState success(long resultId) {
+            return new AnalysisState(Status.SUCCESS, resultId, null);
+        }
+
+        static AnalysisState error(String errorMessage) {
+            return new AnalysisState(Status.ERROR, -1, errorMessage);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.fitnesee;
+
+import java.util.Objects;
+
+/**
+ * 录入页面上的一行食物（不可变）。id 在本次会话内唯一且稳定，供 RecyclerView 做稳定 ID 与差分。
+ */
+public final class MealItem {
+    public final long id;
+    public final String mealType;
+    public final String foodName;
+    public final double grams;
+
+    public MealItem(long id, String mealType, String foodName, double grams) {
+        this.id = id;
+        this.mealType = mealType;
+        this.foodName = foodName != null ? foodName : "";
+        this.grams = grams;
+    }
+
+    public MealItem withFoodName(String foodName) {
+        return new MealItem(id, mealType, foodName, grams);
+    }
+
+    public MealItem withGrams(double grams) {
+        return new MealItem(id, mealType, foodName, grams);
+    }
+
+    /**
+     * 名称里已带数量（如“2个鸡蛋”）时，克数一栏可以不填。
+     */
+    public boolean isValid() {
+        return !foodName.trim().isEmpty() && (grams > 0 || PortionParser.parse(foodName) != null);
+    }
+
+    /**
+     * 提交用：名称里带数量时拆成标准食物名，与单独录入的同一食物共用缓存；用户填写的克数始终优先，
+     * 只有克数一栏为空时才用名称里换算出的克数。
+     */
+    public NutritionDatabase.MealEntry toMealEntry() {
+        PortionParser.Portion portion = PortionParser.parse(foodName);
+        if (portion != null) {
+            return new NutritionDatabase.MealEntry(portion.foodName, grams > 0 ? grams : portion.grams, mealType);
+        }
+        return new NutritionDatabase.MealEntry(PortionParser.canonicalFoodName(foodName), grams, mealType);
+    }
+
+    public boolean sameContentAs(MealItem other) {
+        return foodName.equals(other.foodName) && grams == other.grams && Objects.equals(mealType, other.mealType);
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.fitnesee;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 下一餐优化：在食物目录与用户常吃的食物中，搜索 1~3 种食物的份量组合，使热量和三大营养素最接近本餐目标。
+ * 先按常吃程度与营养结构挑出少量候选，再对（食物, 份量）做有界的束搜索，整体在 TIME_BUDGET_MS 内完成，
+ * 超时则返回已找到的最好组合。不依赖 Android，可在 JVM 上测试。
+ */
+public final class MealOptimizer {
+    static final long TIME_BUDGET_MS = 50;
+    static final int MAX_ITEMS = 3;
+    static final int MAX_CANDIDATES = 80;
+    static final int BEAM_WIDTH = 128;
+    private static final int[] GRAM_STEPS = {50, 100, 150, 200, 250, 300};
+    private static final int MAX_UNITS = 4;
+    // 单个份量的热量不超过本餐目标的这个倍数
+    private static final double MAX_PORTION_RATIO = 1.2;
+
+    private MealOptimizer() {
+    }
+
+    /**
+     * 候选食物：每 100g 的营养数据，以及在历史日志中出现的次数（越常吃越优先）。
+     */
+    static final class Candidate {
+        final AdviceEngine.Food food;
+        final int uses;
+
+        Candidate(AdviceEngine.Food food, int uses) {
+            this.food = food;
+            this.uses = uses;
+        }
+    }
+
+    /**
+     * 搜索本餐的食物组合，目标为热量（千卡）与蛋白质、脂肪、碳水（克）。没有可用候选时返回空列表。
+     */
+    static List<AdviceEngine.Portion> optimize(List<Candidate> candidates, double calories, double protein, double fat, double carb) {
+        return optimize(candidates, calories, protein, fat, carb, System::nanoTime);
+    }
+
+    /**
+     * 同上，时间预算按 nanoClock（纳秒）计算；测试中传入可控的时钟。
+     */
+    static List<AdviceEngine.Portion> optimize(List<Candidate> candidates, double calories, double protein, double fat, double carb,
+                                               LongSupplier nanoClock) {
+        if (calories <= 0 || candidates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long deadline = nanoClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(TIME_BUDGET_MS);
+        Objective objective = new Objective(calories, protein, fat, carb);
+        List<Option[]> options = buildOptions(preselect(candidates, objective), calories);
+
+        List<State> beam = Collections.singletonList(State.EMPTY);
+        State best = null;
+        for (int depth = 0; depth < MAX_ITEMS && !beam.isEmpty(); depth++) {
+            // 大顶堆：堆顶是当前保留的最差状态
+            PriorityQueue<State> next = new PriorityQueue<>(BEAM_WIDTH + 1, Comparator.comparingDouble((State s) -> s.score).reversed());
+            for (State state : beam) {
+                // 只向后扩展，同一组合不会以不同顺序重复出现
+                for (int i = state.lastIndex + 1; i < options.size(); i++) {
+                    for (Option option : options.get(i)) {
+                        State expanded = state.add(i, option, objective);
+                        if (next.size() < BEAM_WIDTH) {
+                            next.add(expanded);
+                        } else if (expanded.score < next.peek().score) {
+                            next.poll();
+                            next.add(expanded);
+                        }
+                    }
+                }
+                if (nanoClock.getAsLong() - deadline > 0) {
+                    break;
+                }
+            }
+            beam = new ArrayList<>(next);
+            for (State state : beam) {
+                if (best == null || state.score < best.score) {
+                    best = state;
+                }
+            }
+            if (nanoClock.getAsLong() - deadline > 0) {
+                break;
+            }
+        }
+        return best != null ? best.portions() : Collections.<AdviceEngine.Portion>emptyList();
+    }
+
+    /**
+     * 线性扫描一遍，用小顶堆保留相关度最高的 MAX_CANDIDATES 个：常吃程度 + 营养结构与目标的相似度。
+     */
+    private static List<Candidate> preselect(List<Candidate> candidates, Objective objective) {
+        PriorityQueue<double[]> top = new PriorityQueue<>(MAX_CANDIDATES + 1, Comparator.comparingDouble((double[] e) -> e[0]));
+        for (int i = 0; i < candidates.size(); i++) {
+            AdviceEngine.Food food = candidates.get(i).food;
+            if (food.calories <= 0 || food.protein < 0 || food.fat < 0 || food.carb < 0) {
+                continue;
+            }
+            double relevance = Math.log1p(candidates.get(i).uses) + objective.similarity(food);
+            if (top.size() < MAX_CANDIDATES) {
+                top.add(new double[]{relevance, i});
+            } else if (relevance > top.peek()[0]) {
+                top.poll();
+                top.add(new double[]{relevance, i});
+            }
+        }
+        List<Candidate> selected = new ArrayList<>(top.size());
+        for (double[] entry : top) {
+            selected.add(candidates.get((int) entry[1]));
+        }
+        return selected;
+    }
+
+    /**
+     * 每个候选的可选份量：有计数单位的按 1~4 个，其余按固定克数档位；去掉单份就明显超出本餐热量的档位。
+     */
+    private static List<Option[]> buildOptions(List<Candidate> candidates, double calories) {
+        List<Option[]> options = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            AdviceEngine.Food food = candidate.food;
+            List<Option> portions = new ArrayList<>();
+            if (food.unit != null && food.unitGrams > 0) {
+                for (int units = 1; units <= MAX_UNITS; units++) {
+                    portions.add(new Option(candidate, units * food.unitGrams));
+                }
+            } else {
+                for (int grams : GRAM_STEPS) {
+                    portions.add(new Option(candidate, grams));
+                }
+            }
+            List<Option> kept = new ArrayList<>(portions.size());
+            for (Option option : portions) {
+                if (option.calories <= calories * MAX_PORTION_RATIO) {
+                    kept.add(option);
+                }
+            }
+            if (!kept.isEmpty()) {
+                options.add(kept.toArray(new Option[0]));
+            }
+        }
+        return options;
+    }
+
+    private static final class Option {
+        final Candidate candidate;
+        final double grams;
+        final double calories, protein, fat, carb;
+
+        Option(Candidate candidate, double grams) {
+            this.candidate = candidate;
+            this.grams = grams;
+            double ratio = grams / 100;
+            AdviceEngine.Food food = candidate.food;
+            calories = food.calories * ratio;
+            protein = food.protein * ratio;
+            fat = food.fat * ratio;
+            carb = food.carb * ratio;
+        }
+    }
+
+    /**
+     * 搜索状态：已选的份量（链表，共享前缀）及其营养合计。
+     */
+    private static final class State {
+        static final State EMPTY = new State(null, null, -1, 0, 0, 0, 0, 0, 0);
+
+        final State parent;
+        final Option option;
+        final int lastIndex;
+        final int items;
+        final double calories, protein, fat, carb;
+        final double familiarity;
+        final double score;
+
+        private State(State parent, Option option, int lastIndex, double calories, double protein, double fat, double carb,
+                      double familiarity, double score) {
+            this.parent = parent;
+            this.option = option;
+            this.lastIndex = lastIndex;
+            this.items = parent != null ? parent.items + 1 : 0;
+            this.calories = calories;
+            this.protein = protein;
+            this.fat = fat;
+            this.carb = carb;
+            this.familiarity = familiarity;
+            this.score = score;
+        }
+
+        State add(int index, Option option, Objective objective) {
+            double c = calories + option.calories;
+            double p = protein + option.protein;
+            double f = fat + option.fat;
+            double cb = carb + option.carb;
+            double fam = familiarity + Math.log1p(option.candidate.uses);
+            return new State(this, option, index, c, p, f, cb, fam, objective.score(c, p, f, cb, fam, items + 1));
+        }
+
+        List<AdviceEngine.Portion> portions() {
+            List<AdviceEngine.Portion> portions = new ArrayList<>(items);
+            for (State s = this; s.option != null; s = s.parent) {
+                portions.add(0, new AdviceEngine.Portion(s.option.candidate.food, s.option.grams));
+            }
+            return portions;
+        }
+    }
+
+    private static final class Objective {
+        final double calories, protein, fat, carb;
+
+        Objective(double calories, double protein, double fat, double carb) {
+            this.calories = calories;
+            this.protein = Math.max(0, protein);
+            this.fat = Math.max(0, fat);
+            this.carb = Math.max(0, carb);
+        }
+
+        /**
+         * 越小越好：热量的相对偏差权重最高（超出比不足更重），其次是蛋白质；常吃的食物略加分，组合越简单越好。
+         */
+        double score(double c, double p, double f, double cb, double familiarity, int items) {
+            double dc = (c - calories) / calories;
+            double score = (dc > 0 ? 8 : 4) * dc * dc;
+            score += 2 * square((p - protein) / Math.max(protein, 10));
+            score += square((f - fat) / Math.max(fat, 10));
+            score += square((cb - carb) / Math.max(carb, 20));
+            return score - 0.02 * familiarity + 0.01 * items;
+        }
+
+        /**
+         * 食物热量构成（蛋白质、脂肪、碳水供能）与目标构成的余弦相似度。
+         */
+        double similarity(AdviceEngine.Food food) {
+            double fp = food.protein * 4, ff = food.fat * 9, fc = food.carb * 4;
+            double tp = protein * 4, tf = fat * 9, tc = carb * 4;
+            double norm = Math.sqrt(fp * fp + ff * ff + fc * fc) * Math.sqrt(tp * tp + tf * tf + tc * tc);
+            return norm > 0 ? (fp * tp + ff * tf + fc * tc) / norm : 0;
+        }
+
+        private static double square(double x) {
+            return x * x;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.fitnesee;
+
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AppCompatActivity;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 调试用的性能指标页面：查看各阶段耗时与计数，并可导出为 JSON。
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    private static final String TAG = "MetricsActivity";
+    private TextView metricsText;
+    private ActivityResultLauncher<String> exportLauncher;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+
+        metricsText = findViewById(R.id.metricsText);
+        Button refreshButton = findViewById(R.id.refreshMetricsButton);
+        Button exportButton = findViewById(R.id.exportMetricsButton);
+        Button resetButton = findViewById(R.id.resetMetricsButton);
+
+        if (metricsText == null || refreshButton == null || exportButton == null || resetButton == null) {
+            Log.e(TAG, "One or more views are null in activity_metrics");
+            Toast.makeText(this, "界面初始化失败，请检查布局文件", Toast.LENGTH_LONG).show();
+            finish();
+            return;
+        }
+
+        exportLauncher = registerForActivityResult(
+                new ActivityResultContracts.CreateDocument("application/json"), this::exportTo);
+
+        refreshButton.setOnClickListener(v -> render());
+        exportButton.setOnClickListener(v -> exportLauncher.launch("fitnesee_metrics_" + System.currentTimeMillis() + ".json"));
+        resetButton.setOnClickListener(v -> {
+            PerfMetrics.get().reset();
+            render();
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        render();
+    }
+
+    private void render() {
+        if (metricsText != null) {
+            metricsText.setText(PerfMetrics.get().formatSummary());
+        }
+    }
+
+    private void exportTo(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+        try (OutputStream out = getContentResolver().openOutputStream(uri)) {
+            if (out == null) {
+                throw new IOException("Unable to open output stream for " + uri);
+            }
+            out.write(PerfMetrics.get().toJson().toString(2).getBytes(StandardCharsets.UTF_8));
+            Toast.makeText(this, "指标已导出", Toast.LENGTH_SHORT).show();
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Failed to export metrics: " + e.getMessage(), e);
+            Toast.makeText(this, "导出失败: " + e.getMessage(), Toast.LENGTH_LONG).show();
+        }
+    }
+}
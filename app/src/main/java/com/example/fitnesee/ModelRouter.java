@@ -0,0 +1,36 @@
+package com.example.fitnesee;
+
+/**
+ * 按任务类型选择智谱模型。营养查询是很小的结构化任务，默认走低延迟模型，
+ * 返回的数值校验不通过时升级到高质量模型重试；个性化建议始终使用高质量模型。
+ * 各任务的模型可通过 gradle.properties 中的 ZHIPU_*_MODEL 覆盖（见 BuildConfig）。
+ */
+public final class ModelRouter {
+    public enum Task {
+        NUTRITION,
+        NUTRITION_ESCALATION,
+        ADVICE
+    }
+
+    private ModelRouter() {
+    }
+
+    public static String modelFor(Task task) {
+        switch (task) {
+            case NUTRITION:
+                return BuildConfig.ZHIPU_NUTRITION_MODEL;
+            case NUTRITION_ESCALATION:
+                return BuildConfig.ZHIPU_ESCALATION_MODEL;
+            case ADVICE:
+            default:
+                return BuildConfig.ZHIPU_ADVICE_MODEL;
+        }
+    }
+
+    /**
+     * 营养查询失败后是否还能升级到另一个模型。
+     */
+    public static boolean canEscalate(String model) {
+        return !modelFor(Task.NUTRITION_ESCALATION).equals(model);
+    }
+}
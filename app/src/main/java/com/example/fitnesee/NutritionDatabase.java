@@ -5,6 +5,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -17,59 +18,103 @@ import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
-import okhttp3.RequestBody;
 import okhttp3.Response;
 
 public class NutritionDatabase extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "Nutrition.db";
-    private static final int DATABASE_VERSION = 12; // 再次升级版本号以确保清除旧数据
-    private static final String TABLE_FOOD = "food_nutrients";
+    // 13: upload_log 时间戳索引；14: food_nutrients 名称索引；15: upload_log 带年份的日期列；16: food_nutrients 估算值标记
+    private static final int DATABASE_VERSION = 16;
+    static final String TABLE_FOOD = "food_nutrients";
     private static final String TABLE_USER = "user_profile";
-    private static final String TABLE_LOG = "upload_log";
-    private static final String COLUMN_ID = "id";
-    private static final String COLUMN_NAME = "name";
-    private static final String COLUMN_PROTEIN = "protein";
-    private static final String COLUMN_FAT = "fat";
-    private static final String COLUMN_CARB = "carb";
-    private static final String COLUMN_CALORIES = "calories";
+    static final String TABLE_LOG = "upload_log";
+    static final String COLUMN_ID = "id";
+    static final String COLUMN_NAME = "name";
+    static final String COLUMN_PROTEIN = "protein";
+    static final String COLUMN_FAT = "fat";
+    static final String COLUMN_CARB = "carb";
+    static final String COLUMN_CALORIES = "calories";
+    // 1 表示接口失败时按名称关键字估算的占位数据，不作为下一餐建议，也不进入备份快照与导出
+    static final String COLUMN_ESTIMATED = "estimated";
     private static final String USER_ID = "user_id";
     private static final String USER_WEIGHT = "weight";
     private static final String USER_HEIGHT = "height";
     private static final String USER_AGE = "age";
     private static final String USER_GENDER = "gender";
     private static final String USER_GOAL = "goal";
-    private static final String LOG_TIMESTAMP = "timestamp";
-    private static final String LOG_FOOD_NAME = "food_name";
-    private static final String LOG_GRAMS = "grams";
-    private static final String LOG_MEAL_TYPE = "meal_type";
+    static final String LOG_TIMESTAMP = "timestamp";
+    static final String LOG_FOOD_NAME = "food_name";
+    static final String LOG_GRAMS = "grams";
+    static final String LOG_MEAL_TYPE = "meal_type";
+    // 记录所在日期 yyyyMMdd（上海时区）。timestamp 文本不含年份，按日期筛选和排序都用这一列
+    static final String LOG_DAY = "log_day";
     private static final String TAG = "NutritionDatabase";
     private static final long TASK_TIMEOUT_SECONDS = 60;
+    private static final int WARMUP_RECENT_FOODS = 50;
+    // 下一餐优化最多读取的缓存食物数（按食用次数）
+    private static final int MAX_OPTIMIZER_CANDIDATES = 5000;
+    // 候选列表需要扫描整个食物缓存并按食物名统计日志，缓存在内存中，过期后在后台刷新；
+    // 食用次数变化缓慢，新缓存的食物晚几分钟出现在建议中没有影响
+    private static final long OPTIMIZER_CANDIDATES_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static volatile List<MealOptimizer.Candidate> optimizerCandidates;
+    private static volatile long optimizerCandidatesLoadedAtMs;
+    private static final AtomicBoolean optimizerCandidatesRefreshing = new AtomicBoolean();
+    // 未命中缓存的食物在这里并发请求，实际速率与并发由 ZhipuClient 的调度器控制
+    private static final ExecutorService lookupExecutor = Executors.newFixedThreadPool(ZhipuClient.MAX_CONCURRENT_REQUESTS);
+    // 对冲请求、估算值升级与大模型建议各自使用的线程，避免占用上面的查询线程；
+    // 建议不与升级共用线程，某次提交的估算值迟迟等不到结果时不会拖住之后提交的建议
+    private static final ExecutorService hedgeExecutor = Executors.newCachedThreadPool();
+    private static final ExecutorService upgradeExecutor = Executors.newSingleThreadExecutor();
+    private static final ExecutorService adviceExecutor = Executors.newSingleThreadExecutor();
+    private static final long DEFAULT_HEDGE_DELAY_MS = 3000;
+    private static final long MIN_HEDGE_DELAY_MS = 1000;
+    private static final int MIN_HEDGE_SAMPLES = 20;
+    // 正在进行的营养查询，按食物名共享
+    private static final ConcurrentHashMap<String, Lookup> inFlightLookups = new ConcurrentHashMap<>();
+    // estimateFoodData 的估算值（kcal, protein, fat, carb）：鸡蛋、猪肉、米饭、其他
+    private static final double[][] ESTIMATE_VALUES = {{68, 6.3, 5.0, 0.5}, {250, 26, 15, 0}, {130, 2.7, 0.3, 28}, {50, 1, 1, 10}};
 
-    private static final OkHttpClient client = new OkHttpClient();
     public static final SimpleDateFormat timestampFormat = new SimpleDateFormat("MM月dd日 HH:mm:ss", Locale.getDefault());
 
+    private final Context appContext;
+
     public NutritionDatabase(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * 使用指定的数据库文件，供仪器测试使用独立的数据库，不影响应用数据。
+     */
+    NutritionDatabase(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        appContext = context.getApplicationContext();
         timestampFormat.setTimeZone(TimeZone.getTimeZone("Asia/Shanghai"));
     }
 
@@ -81,7 +126,8 @@ public class NutritionDatabase extends SQLiteOpenHelper {
                 COLUMN_PROTEIN + " REAL, " +
                 COLUMN_FAT + " REAL, " +
                 COLUMN_CARB + " REAL, " +
-                COLUMN_CALORIES + " REAL)";
+                COLUMN_CALORIES + " REAL, " +
+                COLUMN_ESTIMATED + " INTEGER NOT NULL DEFAULT 0)";
         db.execSQL(createFoodTable);
 
         String createUserTable = "CREATE TABLE " + TABLE_USER + " (" +
@@ -98,8 +144,24 @@ public class NutritionDatabase extends SQLiteOpenHelper {
                 LOG_TIMESTAMP + " TEXT, " +
                 LOG_FOOD_NAME + " TEXT, " +
                 LOG_GRAMS + " REAL, " +
-                LOG_MEAL_TYPE + " TEXT)";
+                LOG_MEAL_TYPE + " TEXT, " +
+                LOG_DAY + " INTEGER)";
         db.execSQL(createLogTable);
+        createLogIndexes(db);
+        createLogDayIndex(db);
+        createFoodIndexes(db);
+    }
+
+    private void createLogIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_upload_log_timestamp ON " + TABLE_LOG + " (" + LOG_TIMESTAMP + ")");
+    }
+
+    private void createLogDayIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_upload_log_day ON " + TABLE_LOG + " (" + LOG_DAY + ", " + LOG_TIMESTAMP + ")");
+    }
+
+    private void createFoodIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_food_nutrients_name ON " + TABLE_FOOD + " (" + COLUMN_NAME + ")");
     }
 
     @Override
@@ -115,6 +177,68 @@ public class NutritionDatabase extends SQLiteOpenHelper {
             db.execSQL(createLogTable);
             Log.i(TAG, "Dropped and recreated upload_log table to fix timestamp format issues");
         }
+        if (oldVersion < 13) {
+            createLogIndexes(db);
+            Log.i(TAG, "Created upload_log timestamp index");
+        }
+        if (oldVersion < 14) {
+            createFoodIndexes(db);
+            Log.i(TAG, "Created food_nutrients name index");
+        }
+        if (oldVersion < 15) {
+            db.execSQL("ALTER TABLE " + TABLE_LOG + " ADD COLUMN " + LOG_DAY + " INTEGER");
+            backfillLogDays(db, new Date());
+            createLogDayIndex(db);
+            Log.i(TAG, "Added upload_log day column");
+        }
+        if (oldVersion < 16) {
+            db.execSQL("ALTER TABLE " + TABLE_FOOD + " ADD COLUMN " + COLUMN_ESTIMATED + " INTEGER NOT NULL DEFAULT 0");
+            // 之前写入的估算值只能按 estimateFoodData 的固定取值识别
+            for (double[] estimate : ESTIMATE_VALUES) {
+                db.execSQL("UPDATE " + TABLE_FOOD + " SET " + COLUMN_ESTIMATED + " = 1 WHERE " + COLUMN_CALORIES + " = ? AND " +
+                                COLUMN_PROTEIN + " = ? AND " + COLUMN_FAT + " = ? AND " + COLUMN_CARB + " = ?",
+                        new Object[]{estimate[0], estimate[1], estimate[2], estimate[3]});
+            }
+            Log.i(TAG, "Added food_nutrients estimated column");
+        }
+    }
+
+    /**
+     * 为没有日期列的旧记录推断年份：月日不晚于 now 的算作今年，否则算作去年。
+     * 旧记录本身不含年份，超过一年的旧记录无法区分，会被归到最近一年的同一天。
+     */
+    static void backfillLogDays(SQLiteDatabase db, Date now) {
+        int today = dayKey(now);
+        String monthDay = "(CAST(substr(" + LOG_TIMESTAMP + ", 1, 2) AS INTEGER) * 100 + CAST(substr(" + LOG_TIMESTAMP + ", 4, 2) AS INTEGER))";
+        db.execSQL("UPDATE " + TABLE_LOG + " SET " + LOG_DAY + " = (CASE WHEN " + monthDay + " <= ? THEN ? ELSE ? END) * 10000 + " + monthDay +
+                        " WHERE " + LOG_DAY + " IS NULL AND " + LOG_TIMESTAMP + " IS NOT NULL",
+                new Object[]{today % 10000, today / 10000, today / 10000 - 1});
+    }
+
+    /**
+     * 上海时区下 date 所在的日期，格式 yyyyMMdd，可直接比较先后。
+     */
+    static int dayKey(Date date) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("Asia/Shanghai"));
+        calendar.setTime(date);
+        return calendar.get(Calendar.YEAR) * 10000 + (calendar.get(Calendar.MONTH) + 1) * 100 + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+
+    /**
+     * 不带年份的时间戳（MM月dd日 HH:mm:ss）按 backfillLogDays 的规则推断日期，无法解析时返回 0。
+     */
+    static int inferDayKey(String timestamp, Date now) {
+        if (timestamp == null || timestamp.length() < 5) {
+            return 0;
+        }
+        int monthDay;
+        try {
+            monthDay = Integer.parseInt(timestamp.substring(0, 2)) * 100 + Integer.parseInt(timestamp.substring(3, 5));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        int today = dayKey(now);
+        return (monthDay <= today % 10000 ? today / 10000 : today / 10000 - 1) * 10000 + monthDay;
     }
 
     public void insertUserProfile(double weight, double height, int age, String gender, String goal) {
@@ -171,19 +295,23 @@ public class NutritionDatabase extends SQLiteOpenHelper {
     }
 
     public void fetchDailyFoodData(List<MealEntry> meals, OnDailyDataFetchedListener listener) {
+        PerfMetrics.Span submissionSpan = PerfMetrics.get().begin(PerfMetrics.STAGE_SUBMISSION);
         logUploadData(meals);
         ExecutorService executor = Executors.newSingleThreadExecutor();
-        FutureTask<DailyFoodData> futureTask = new FutureTask<>(new FetchDailyFoodTask(meals, listener));
+        FetchDailyFoodTask task = new FetchDailyFoodTask(meals, listener);
+        FutureTask<DailyFoodData> futureTask = new FutureTask<>(task);
         executor.execute(futureTask);
 
         try {
             DailyFoodData result = futureTask.get(TASK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
             if (listener != null && result != null) {
                 listener.onDataFetched(result, result.totalCalories, result.totalProtein, result.totalFat, result.totalCarb, result.recommendedCalories, result.advice);
+                task.startUpgrade();
             }
         } catch (InterruptedException | TimeoutException e) {
             String errorMessage = "Task interrupted or timed out: " + e.getMessage();
             Log.e(TAG, errorMessage);
+            PerfMetrics.get().increment(PerfMetrics.COUNT_SUBMISSION_TIMEOUT);
             if (listener != null) {
                 listener.onError(errorMessage);
             }
@@ -203,23 +331,28 @@ public class NutritionDatabase extends SQLiteOpenHelper {
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
+            if (!task.upgradeStarted) {
+                // 超时、失败或没有交付：不会再升级，释放保留的查询
+                task.abandon();
+            }
+            submissionSpan.close();
         }
     }
 
     public List<LogEntry> logUploadData(List<MealEntry> meals) {
+        PerfMetrics.Span span = PerfMetrics.get().begin(PerfMetrics.STAGE_LOG_WRITE);
         SQLiteDatabase db = this.getWritableDatabase();
         List<LogEntry> latestLogs = new ArrayList<>();
         try {
             Date currentTime = Calendar.getInstance(TimeZone.getTimeZone("Asia/Shanghai")).getTime();
             String timestamp = timestampFormat.format(currentTime);
             Log.d(TAG, "Storing timestamp in logUploadData: " + timestamp);
-            SimpleDateFormat dateFormat = new SimpleDateFormat("MM月dd日", Locale.getDefault());
-            dateFormat.setTimeZone(TimeZone.getTimeZone("Asia/Shanghai"));
-            String currentDate = dateFormat.format(currentTime);
+            int currentDate = dayKey(currentTime);
 
             for (MealEntry meal : meals) {
-                String whereClause = LOG_TIMESTAMP + " LIKE ? AND " + LOG_FOOD_NAME + " = ?";
-                String[] whereArgs = {currentDate + "%", meal.foodName};
+                // 按当天日期查询，走日期索引
+                String whereClause = LOG_DAY + " = ? AND " + LOG_FOOD_NAME + " = ?";
+                String[] whereArgs = {String.valueOf(currentDate), meal.foodName};
                 Cursor cursor = null;
                 try {
                     cursor = db.query(TABLE_LOG, new String[]{COLUMN_ID, LOG_TIMESTAMP, LOG_FOOD_NAME, LOG_GRAMS, LOG_MEAL_TYPE},
@@ -230,6 +363,7 @@ public class NutritionDatabase extends SQLiteOpenHelper {
                     values.put(LOG_FOOD_NAME, meal.foodName);
                     values.put(LOG_GRAMS, meal.grams);
                     values.put(LOG_MEAL_TYPE, meal.mealType != null ? meal.mealType : "unknown");
+                    values.put(LOG_DAY, currentDate);
 
                     if (cursor.moveToFirst()) {
                         int id = cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ID));
@@ -256,48 +390,110 @@ public class NutritionDatabase extends SQLiteOpenHelper {
             Log.e(TAG, "Error in logUploadData: " + e.getMessage(), e);
         } finally {
             db.close();
+            span.close();
         }
         return latestLogs;
     }
 
-    public List<LogEntry> getUploadLogs() {
+    /**
+     * 按时间倒序分页读取日志（键集分页）：after 为上一页最后一条，为 null 时从最新一条开始。
+     * 每页只查询 limit 条，按（日期, 时间戳, ID）走日期索引，不会随历史记录增多而变慢，跨年也保持先后顺序。
+     */
+    public List<LogEntry> getLogPage(LogEntry after, int limit) {
+        String selection = null;
+        String[] selectionArgs = null;
+        if (after != null && after.timestampText != null) {
+            selection = LOG_DAY + " < ? OR (" + LOG_DAY + " = ? AND (" + LOG_TIMESTAMP + " < ? OR (" + LOG_TIMESTAMP + " = ? AND " + COLUMN_ID + " < ?)))";
+            selectionArgs = keysetArgs(after);
+        }
+        return queryLogEntries(selection, selectionArgs, LOG_ORDER_NEWEST_FIRST, String.valueOf(limit));
+    }
+
+    /**
+     * 读取比 newest 更新的日志（按时间倒序），用于把新记录就地插入到已显示的列表顶部。
+     */
+    public List<LogEntry> getLogsNewerThan(LogEntry newest) {
+        if (newest == null || newest.timestampText == null) {
+            return getLogPage(null, Integer.MAX_VALUE);
+        }
+        return queryLogEntries(LOG_DAY + " > ? OR (" + LOG_DAY + " = ? AND (" + LOG_TIMESTAMP + " > ? OR (" + LOG_TIMESTAMP + " = ? AND " + COLUMN_ID + " > ?)))",
+                keysetArgs(newest), LOG_ORDER_NEWEST_FIRST, null);
+    }
+
+    private static final String LOG_ORDER_NEWEST_FIRST = LOG_DAY + " DESC, " + LOG_TIMESTAMP + " DESC, " + COLUMN_ID + " DESC";
+
+    private static String[] keysetArgs(LogEntry entry) {
+        String day = String.valueOf(entry.day);
+        return new String[]{day, day, entry.timestampText, entry.timestampText, String.valueOf(entry.id)};
+    }
+
+    private List<LogEntry> queryLogEntries(String selection, String[] selectionArgs, String orderBy, String limit) {
         List<LogEntry> logs = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = null;
-        try {
-            cursor = db.query(TABLE_LOG, new String[]{LOG_TIMESTAMP, LOG_FOOD_NAME, LOG_GRAMS, LOG_MEAL_TYPE},
-                    null, null, null, null, LOG_TIMESTAMP + " DESC");
-
+        try (PerfMetrics.Span ignored = PerfMetrics.get().begin(PerfMetrics.STAGE_LOG_READ)) {
+            cursor = db.query(TABLE_LOG, new String[]{COLUMN_ID, LOG_TIMESTAMP, LOG_FOOD_NAME, LOG_GRAMS, LOG_MEAL_TYPE, LOG_DAY},
+                    selection, selectionArgs, null, null, orderBy, limit);
+            int idIndex = cursor.getColumnIndexOrThrow(COLUMN_ID);
+            int timestampIndex = cursor.getColumnIndexOrThrow(LOG_TIMESTAMP);
+            int foodIndex = cursor.getColumnIndexOrThrow(LOG_FOOD_NAME);
+            int gramsIndex = cursor.getColumnIndexOrThrow(LOG_GRAMS);
+            int mealTypeIndex = cursor.getColumnIndexOrThrow(LOG_MEAL_TYPE);
+            int dayIndex = cursor.getColumnIndexOrThrow(LOG_DAY);
             while (cursor.moveToNext()) {
-                String timestampStr = cursor.getString(cursor.getColumnIndexOrThrow(LOG_TIMESTAMP));
-                String foodName = cursor.getString(cursor.getColumnIndexOrThrow(LOG_FOOD_NAME));
-                double grams = cursor.getDouble(cursor.getColumnIndexOrThrow(LOG_GRAMS));
-                String mealType = cursor.getString(cursor.getColumnIndexOrThrow(LOG_MEAL_TYPE));
-
-                Log.d(TAG, "Read timestamp from DB: " + timestampStr + " for food: " + foodName);
-
+                String timestampStr = cursor.getString(timestampIndex);
                 Date timestamp = null;
                 try {
                     if (timestampStr != null && !timestampStr.trim().isEmpty()) {
                         timestamp = timestampFormat.parse(timestampStr);
-                        Log.d(TAG, "Parsed timestamp: " + timestampStr + " -> " + timestamp);
-                    } else {
-                        Log.w(TAG, "Timestamp string is null or empty for food: " + foodName);
                     }
                 } catch (ParseException e) {
                     Log.e(TAG, "Failed to parse timestamp: " + timestampStr + ", error: " + e.getMessage(), e);
                 }
+                LogEntry entry = new LogEntry(cursor.getLong(idIndex), timestampStr, timestamp, cursor.getString(foodIndex),
+                        cursor.getDouble(gramsIndex), cursor.getString(mealTypeIndex));
+                entry.day = cursor.getInt(dayIndex);
+                logs.add(entry);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error querying logs: " + e.getMessage(), e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            db.close();
+        }
+        return logs;
+    }
 
-                if (timestamp == null) {
-                    Log.w(TAG, "Invalid timestamp for log entry: " + foodName + ", using current time as default");
-                    timestamp = Calendar.getInstance(TimeZone.getTimeZone("Asia/Shanghai")).getTime();
+    /**
+     * 读取某一天的全部记录（按时间升序），按带年份的日期列查询，不会混入往年同一天的记录。
+     */
+    public List<LogEntry> getLogsForDay(Date day) {
+        List<LogEntry> logs = new ArrayList<>();
+        int date = dayKey(day);
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+        try (PerfMetrics.Span ignored = PerfMetrics.get().begin(PerfMetrics.STAGE_LOG_READ)) {
+            cursor = db.query(TABLE_LOG, new String[]{LOG_TIMESTAMP, LOG_FOOD_NAME, LOG_GRAMS, LOG_MEAL_TYPE},
+                    LOG_DAY + " = ?", new String[]{String.valueOf(date)},
+                    null, null, LOG_TIMESTAMP + " ASC");
+            int timestampIndex = cursor.getColumnIndexOrThrow(LOG_TIMESTAMP);
+            int foodIndex = cursor.getColumnIndexOrThrow(LOG_FOOD_NAME);
+            int gramsIndex = cursor.getColumnIndexOrThrow(LOG_GRAMS);
+            int mealTypeIndex = cursor.getColumnIndexOrThrow(LOG_MEAL_TYPE);
+            while (cursor.moveToNext()) {
+                Date timestamp;
+                try {
+                    timestamp = timestampFormat.parse(cursor.getString(timestampIndex));
+                } catch (ParseException e) {
+                    timestamp = day;
                 }
-
-                logs.add(new LogEntry(timestamp, foodName, grams, mealType));
+                logs.add(new LogEntry(timestamp, cursor.getString(foodIndex), cursor.getDouble(gramsIndex), cursor.getString(mealTypeIndex)));
             }
+            Log.d(TAG, "Loaded " + logs.size() + " log entries for " + date);
         } catch (Exception e) {
-            Log.e(TAG, "Error fetching logs: " + e.getMessage(), e);
-            return null;
+            Log.e(TAG, "Error fetching logs for day " + date + ": " + e.getMessage(), e);
         } finally {
             if (cursor != null) {
                 cursor.close();
@@ -307,7 +503,212 @@ public class NutritionDatabase extends SQLiteOpenHelper {
         return logs;
     }
 
+    /**
+     * 逐天读取日期范围内的日志，并在同一条查询中关联食物缓存换算营养（不调用接口）。
+     * 每读完一天回调一次，内存中只保留当天的数据。未在缓存中的食物计入 unresolvedFoods。
+     * 按带年份的日期列筛选，跨年范围按先后顺序返回；升级前写入的旧记录年份是推断的（见 backfillLogDays），
+     * 其中超过一年的记录会被算进最近一年的同一天。
+     */
+    public void streamRange(Date from, Date to, DayConsumer consumer) {
+        RangeSelection range = new RangeSelection(from, to);
+        String sql = "SELECT l." + LOG_TIMESTAMP + ", l." + LOG_FOOD_NAME + ", l." + LOG_GRAMS + ", l." + LOG_MEAL_TYPE +
+                ", f." + COLUMN_CALORIES + ", f." + COLUMN_PROTEIN + ", f." + COLUMN_FAT + ", f." + COLUMN_CARB + ", l." + LOG_DAY +
+                " FROM " + TABLE_LOG + " l LEFT JOIN " + TABLE_FOOD + " f ON " + FOOD_JOIN_CONDITION +
+                " WHERE " + range.selection + " ORDER BY " + range.orderBy;
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+        try (PerfMetrics.Span ignored = PerfMetrics.get().begin(PerfMetrics.STAGE_RANGE_QUERY)) {
+            cursor = db.rawQuery(sql, range.args);
+            String currentDay = null;
+            int currentDayKey = 0;
+            FoodColumns foods = null;
+            int unresolved = 0;
+            while (cursor.moveToNext()) {
+                int dayKey = cursor.getInt(8);
+                if (currentDay == null || dayKey != currentDayKey) {
+                    if (currentDay != null) {
+                        consumer.onDay(new DayNutrition(currentDay, foods, unresolved));
+                    }
+                    String timestamp = cursor.getString(0);
+                    int space = timestamp != null ? timestamp.indexOf(' ') : -1;
+                    currentDay = space > 0 ? timestamp.substring(0, space) : String.valueOf(timestamp);
+                    currentDayKey = dayKey;
+                    foods = new FoodColumns();
+                    unresolved = 0;
+                }
+                if (cursor.isNull(4)) {
+                    unresolved++;
+                    continue;
+                }
+                double ratio = cursor.getDouble(2) / 100.0;
+                foods.add(cursor.getString(1), cursor.getString(3), cursor.getDouble(4) * ratio,
+                        cursor.getDouble(5) * ratio, cursor.getDouble(6) * ratio, cursor.getDouble(7) * ratio);
+            }
+            if (currentDay != null) {
+                consumer.onDay(new DayNutrition(currentDay, foods, unresolved));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error querying range: " + e.getMessage(), e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            db.close();
+        }
+    }
+
+    /**
+     * 读取日期范围内每天及整体的营养汇总，结果按日期顺序可迭代。
+     */
+    public RangeReport getRange(Date from, Date to) {
+        RangeReport report = new RangeReport();
+        streamRange(from, to, report::add);
+        return report;
+    }
+
+    /**
+     * 在 SQLite 中按天、餐次汇总日期范围内的营养（SUM(grams * 每100克含量 / 100)），
+     * 不把每条日志读成对象。未在食物缓存中的记录只计入 unresolvedEntries。按日期列分组，不同年份的同一天不会合并
+     * （旧记录的年份是推断的，见 streamRange）。
+     */
+    public List<NutrientTotals> getRangeTotals(Date from, Date to) {
+        List<NutrientTotals> result = new ArrayList<>();
+        RangeSelection range = new RangeSelection(from, to);
+        String day = "substr(MIN(l." + LOG_TIMESTAMP + "), 1, instr(MIN(l." + LOG_TIMESTAMP + "), ' ') - 1)";
+        String sql = "SELECT " + day + " AS day, l." + LOG_MEAL_TYPE +
+                ", SUM(l." + LOG_GRAMS + " * f." + COLUMN_CALORIES + " / 100.0)" +
+                ", SUM(l." + LOG_GRAMS + " * f." + COLUMN_PROTEIN + " / 100.0)" +
+                ", SUM(l." + LOG_GRAMS + " * f." + COLUMN_FAT + " / 100.0)" +
+                ", SUM(l." + LOG_GRAMS + " * f." + COLUMN_CARB + " / 100.0)" +
+                ", COUNT(*), COUNT(f." + COLUMN_ID + ")" +
+                " FROM " + TABLE_LOG + " l LEFT JOIN " + TABLE_FOOD + " f ON " + FOOD_JOIN_CONDITION +
+                " WHERE " + range.selection +
+                " GROUP BY l." + LOG_DAY + ", l." + LOG_MEAL_TYPE +
+                " ORDER BY l." + LOG_DAY + ", MIN(l." + LOG_TIMESTAMP + ")";
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+        try (PerfMetrics.Span ignored = PerfMetrics.get().begin(PerfMetrics.STAGE_RANGE_QUERY)) {
+            cursor = db.rawQuery(sql, range.args);
+            while (cursor.moveToNext()) {
+                int entries = cursor.getInt(6);
+                int resolved = cursor.getInt(7);
+                result.add(new NutrientTotals(cursor.getString(0), cursor.getString(1),
+                        cursor.getDouble(2), cursor.getDouble(3), cursor.getDouble(4), cursor.getDouble(5),
+                        entries, entries - resolved));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error querying range totals: " + e.getMessage(), e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            db.close();
+        }
+        return result;
+    }
+
+    // 食物缓存中同名记录可能有多条，只关联最新的一条（走名称索引）
+    private static final String FOOD_JOIN_CONDITION = "f." + COLUMN_ID + " = (SELECT MAX(" + COLUMN_ID + ") FROM " + TABLE_FOOD +
+            " WHERE " + COLUMN_NAME + " = l." + LOG_FOOD_NAME + ")";
+
+    /**
+     * upload_log 上按日期范围过滤的条件（走日期索引）。
+     */
+    private static final class RangeSelection {
+        final String selection;
+        final String[] args;
+        final String orderBy;
+
+        RangeSelection(Date from, Date to) {
+            selection = "l." + LOG_DAY + " BETWEEN ? AND ?";
+            args = new String[]{String.valueOf(dayKey(from)), String.valueOf(dayKey(to))};
+            orderBy = "l." + LOG_DAY + ", l." + LOG_TIMESTAMP;
+        }
+    }
+
+    /**
+     * 启动预热时在后台调用：打开数据库（必要时完成升级），并把最近记录过的食物及其缓存的营养数据
+     * 读入 SQLite 页缓存，录入页第一次查询时不必再从磁盘读取。返回预读到的食物数。
+     */
+    int warmUp() {
+        SQLiteDatabase db = getReadableDatabase();
+        int count = 0;
+        try (Cursor cursor = db.rawQuery("SELECT f." + COLUMN_CALORIES + " FROM (SELECT " + LOG_FOOD_NAME + " FROM " + TABLE_LOG +
+                " GROUP BY " + LOG_FOOD_NAME + " ORDER BY MAX(" + COLUMN_ID + ") DESC LIMIT " + WARMUP_RECENT_FOODS + ") l" +
+                " JOIN " + TABLE_FOOD + " f ON " + FOOD_JOIN_CONDITION, null)) {
+            while (cursor.moveToNext()) {
+                count++;
+            }
+        } finally {
+            db.close();
+        }
+        getOptimizerCandidates();
+        return count;
+    }
+
+    /**
+     * 下一餐优化的候选（只读列表）。首次调用时同步加载，之后返回内存中的列表，过期时在后台刷新。
+     */
+    List<MealOptimizer.Candidate> getOptimizerCandidates() {
+        List<MealOptimizer.Candidate> cached = optimizerCandidates;
+        if (cached == null) {
+            return refreshOptimizerCandidates();
+        }
+        if (SystemClock.elapsedRealtime() - optimizerCandidatesLoadedAtMs > OPTIMIZER_CANDIDATES_TTL_MS
+                && optimizerCandidatesRefreshing.compareAndSet(false, true)) {
+            // 不借用调用方的 helper：它同时被其他线程使用，而每次操作结束都会关闭连接，调用方也可能已被关闭
+            NutritionDatabase refreshDb = new NutritionDatabase(appContext);
+            hedgeExecutor.execute(() -> {
+                try {
+                    refreshDb.refreshOptimizerCandidates();
+                } finally {
+                    refreshDb.close();
+                    optimizerCandidatesRefreshing.set(false);
+                }
+            });
+        }
+        return cached;
+    }
+
+    private List<MealOptimizer.Candidate> refreshOptimizerCandidates() {
+        List<MealOptimizer.Candidate> loaded = Collections.unmodifiableList(loadOptimizerCandidates(MAX_OPTIMIZER_CANDIDATES));
+        optimizerCandidates = loaded;
+        optimizerCandidatesLoadedAtMs = SystemClock.elapsedRealtime();
+        return loaded;
+    }
+
+    /**
+     * 食物缓存中的每种食物（同名取最新一条，跳过估算值）及其在日志中出现的次数，常吃的在前。
+     */
+    private List<MealOptimizer.Candidate> loadOptimizerCandidates(int limit) {
+        List<MealOptimizer.Candidate> candidates = new ArrayList<>();
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT f." + COLUMN_NAME + ", f." + COLUMN_CALORIES + ", f." + COLUMN_PROTEIN + ", f." +
+                COLUMN_FAT + ", f." + COLUMN_CARB + ", IFNULL(u.uses, 0) FROM " + TABLE_FOOD + " f" +
+                " LEFT JOIN (SELECT " + LOG_FOOD_NAME + ", COUNT(*) AS uses FROM " + TABLE_LOG + " GROUP BY " + LOG_FOOD_NAME + ") u" +
+                " ON u." + LOG_FOOD_NAME + " = f." + COLUMN_NAME +
+                " WHERE f." + COLUMN_ID + " IN (SELECT MAX(" + COLUMN_ID + ") FROM " + TABLE_FOOD + " GROUP BY " + COLUMN_NAME + ")" +
+                " AND f." + COLUMN_ESTIMATED + " = 0" +
+                " ORDER BY 6 DESC LIMIT " + limit, null)) {
+            while (cursor.moveToNext()) {
+                FoodData data = new FoodData(cursor.getString(0), cursor.getDouble(1), cursor.getDouble(2),
+                        cursor.getDouble(3), cursor.getDouble(4));
+                if (data.name != null && NutritionPrompt.isPlausible(data)) {
+                    candidates.add(new MealOptimizer.Candidate(
+                            new AdviceEngine.Food(data.name, data.calories, data.protein, data.fat, data.carb, null, 0),
+                            cursor.getInt(5)));
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading optimizer candidates: " + e.getMessage(), e);
+        } finally {
+            db.close();
+        }
+        return candidates;
+    }
+
     private FoodData getCachedFoodData(String foodName) {
+        PerfMetrics.Span span = PerfMetrics.get().begin(PerfMetrics.STAGE_CACHE_LOOKUP);
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = null;
         FoodData foodData = null;
@@ -327,11 +728,18 @@ public class NutritionDatabase extends SQLiteOpenHelper {
                 cursor.close();
             }
             db.close();
+            span.close();
         }
+        PerfMetrics.get().increment(foodData != null ? PerfMetrics.COUNT_CACHE_HIT : PerfMetrics.COUNT_CACHE_MISS);
         return foodData;
     }
 
     private void saveToLocalDatabase(String name, double calories, double protein, double fat, double carb) {
+        saveToLocalDatabase(name, calories, protein, fat, carb, false);
+    }
+
+    private void saveToLocalDatabase(String name, double calories, double protein, double fat, double carb, boolean estimated) {
+        PerfMetrics.Span span = PerfMetrics.get().begin(PerfMetrics.STAGE_CACHE_WRITE);
         SQLiteDatabase db = getWritableDatabase();
         try {
             ContentValues values = new ContentValues();
@@ -340,15 +748,211 @@ public class NutritionDatabase extends SQLiteOpenHelper {
             values.put(COLUMN_PROTEIN, protein);
             values.put(COLUMN_FAT, fat);
             values.put(COLUMN_CARB, carb);
+            values.put(COLUMN_ESTIMATED, estimated ? 1 : 0);
             db.insertWithOnConflict(TABLE_FOOD, null, values, SQLiteDatabase.CONFLICT_REPLACE);
         } finally {
             db.close();
+            span.close();
+        }
+        // 缓存有变化，稍后更新用于备份的快照
+        FoodCacheSnapshot.scheduleWrite(appContext);
+    }
+
+    /**
+     * 返回某个食物正在进行的查询，没有则以给定优先级发起一个。返回的查询须在用完后 release()。
+     */
+    Lookup lookupFood(String foodName, ApiScheduler.Priority priority) {
+        while (true) {
+            Lookup existing = inFlightLookups.get(foodName);
+            if (existing == null) {
+                Lookup lookup = new Lookup(foodName, () -> requestNutrition(foodName, priority));
+                existing = inFlightLookups.putIfAbsent(foodName, lookup);
+                if (existing == null) {
+                    lookup.retain();
+                    lookupExecutor.execute(lookup);
+                    return lookup;
+                }
+            }
+            if (existing.retain()) {
+                return existing;
+            }
+            // 已被最后一个使用者取消，等它移出后重新发起
+            inFlightLookups.remove(foodName, existing);
+        }
+    }
+
+    /**
+     * 预取：缓存中没有该食物时在后台查询并写入缓存，失败时不写入默认值。会阻塞，不要在主线程调用；
+     * 调用线程被中断时放弃等待，没有其他使用者的查询随之取消。
+     *
+     * @return 缓存中已有或成功写入该食物时返回 true
+     */
+    public boolean prefetchFoodData(String foodName) throws InterruptedException {
+        if (getCachedFoodData(foodName) != null) {
+            return true;
+        }
+        Lookup lookup = lookupFood(foodName, ApiScheduler.Priority.BACKGROUND);
+        try {
+            FoodData data = lookup.get();
+            if (data == null) {
+                return false;
+            }
+            if (lookup.claimSave()) {
+                saveToLocalDatabase(foodName, data.calories, data.protein, data.fat, data.carb);
+            }
+            return true;
+        } catch (ExecutionException | CancellationException e) {
+            Log.w(TAG, "Prefetch failed for " + foodName + ": " + e);
+            return false;
+        } finally {
+            lookup.release();
+        }
+    }
+
+    /**
+     * 对冲调度：先发一个请求，超过历史耗时的 NUTRITION_HEDGE_PERCENTILE 分位仍未返回时再发一个相同的请求，
+     * 先拿到有效结果的一方胜出，另一方被取消。请求发往 ModelRouter 为营养查询选择的低延迟模型，
+     * 返回内容校验不通过时升级到高质量模型再试一次。返回每 100g 的营养数据，失败时返回 null。
+     * 不访问数据库，可在多个线程上并发调用。
+     */
+    private FoodData requestNutrition(String foodName, ApiScheduler.Priority priority) {
+        String model = ModelRouter.modelFor(ModelRouter.Task.NUTRITION);
+        boolean invalid = false;
+        ZhipuClient.CallHandle primary = new ZhipuClient.CallHandle();
+        ZhipuClient.CallHandle hedge = new ZhipuClient.CallHandle();
+        CompletionService<FoodData> attempts = new ExecutorCompletionService<>(hedgeExecutor);
+        List<Future<FoodData>> futures = new ArrayList<>(2);
+        FoodData result = null;
+        try (PerfMetrics.Span ignored = PerfMetrics.get().begin(PerfMetrics.STAGE_API_NUTRITION)) {
+            futures.add(attempts.submit(() -> requestNutritionOnce(foodName, model, priority, primary)));
+            long hedgeDelayMs = hedgeDelayMs();
+            long hedgeAtMs = SystemClock.elapsedRealtime() + hedgeDelayMs;
+            int outstanding = 1;
+            while (outstanding > 0 && result == null) {
+                Future<FoodData> done;
+                if (futures.size() == 1) {
+                    done = attempts.poll(Math.max(0, hedgeAtMs - SystemClock.elapsedRealtime()), TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        if (primary.wasThrottled() || ZhipuClient.getScheduler().isPaused()) {
+                            // 正被限流时再发一个请求也无济于事，继续等原请求
+                            hedgeAtMs = SystemClock.elapsedRealtime() + hedgeDelayMs;
+                            continue;
+                        }
+                        Log.d(TAG, "Nutrition lookup for " + foodName + " exceeded " + hedgeDelayMs + " ms, sending hedge request");
+                        PerfMetrics.get().increment(PerfMetrics.COUNT_API_HEDGED);
+                        futures.add(attempts.submit(() -> requestNutritionOnce(foodName, model, priority, hedge)));
+                        outstanding++;
+                        continue;
+                    }
+                } else {
+                    done = attempts.take();
+                }
+                outstanding--;
+                try {
+                    result = done.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof NutritionPrompt.InvalidContentException) {
+                        invalid = true;
+                    } else {
+                        Log.e(TAG, "Nutrition attempt failed for " + foodName + ": " + e.getCause(), e.getCause());
+                    }
+                }
+                if (result != null && futures.size() > 1 && done == futures.get(1)) {
+                    PerfMetrics.get().increment(PerfMetrics.COUNT_API_HEDGE_WON);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            primary.cancel();
+            hedge.cancel();
+            for (Future<FoodData> future : futures) {
+                future.cancel(true);
+            }
+        }
+        if (result == null && invalid && ModelRouter.canEscalate(model) && !Thread.currentThread().isInterrupted()) {
+            String escalation = ModelRouter.modelFor(ModelRouter.Task.NUTRITION_ESCALATION);
+            Log.w(TAG, "Invalid nutrition data for " + foodName + " from " + model + ", escalating to " + escalation);
+            PerfMetrics.get().increment(PerfMetrics.COUNT_MODEL_ESCALATION);
+            try {
+                result = requestNutritionOnce(foodName, escalation, priority, new ZhipuClient.CallHandle());
+            } catch (NutritionPrompt.InvalidContentException e) {
+                Log.w(TAG, "Escalated model also returned invalid data for " + foodName);
+            }
+        }
+        PerfMetrics.get().increment(result != null ? PerfMetrics.COUNT_API_NUTRITION_SUCCESS : PerfMetrics.COUNT_API_NUTRITION_FAILURE);
+        return result;
+    }
+
+    /**
+     * 对冲触发时间：取单次请求耗时的指定分位，样本不足时用默认值。
+     */
+    static long hedgeDelayMs() {
+        PerfMetrics.Histogram attempts = PerfMetrics.get().getHistogram(PerfMetrics.STAGE_API_NUTRITION_ATTEMPT);
+        if (attempts == null || attempts.getCount() < MIN_HEDGE_SAMPLES) {
+            return DEFAULT_HEDGE_DELAY_MS;
+        }
+        return Math.max(MIN_HEDGE_DELAY_MS, attempts.percentile(BuildConfig.NUTRITION_HEDGE_PERCENTILE));
+    }
+
+    /**
+     * 单次营养查询请求，失败或被取消时返回 null，返回内容校验不通过时抛出 InvalidContentException。
+     */
+    private FoodData requestNutritionOnce(String foodName, String model, ApiScheduler.Priority priority, ZhipuClient.CallHandle handle)
+            throws NutritionPrompt.InvalidContentException {
+        JSONObject requestBody;
+        try {
+            requestBody = NutritionPrompt.buildRequest(foodName, model);
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to create JSON request body in fetchFoodData: " + e.getMessage(), e);
+            return null;
+        }
+
+        Request request = ZhipuClient.newChatRequest(requestBody);
+
+        long startMs = SystemClock.elapsedRealtime();
+        try (Response response = ZhipuClient.execute(request, priority, handle)) {
+            if (response.isSuccessful()) {
+                String content = ZhipuClient.readContent(response);
+                Log.d(TAG, "Zhipu nutrition content for " + foodName + ": " + content);
+                FoodData data = NutritionPrompt.parseContent(foodName, content);
+                if (data == null) {
+                    Log.w(TAG, "Invalid nutrition data for " + foodName + " from " + model);
+                    throw new NutritionPrompt.InvalidContentException(model);
+                }
+
+                PerfMetrics.get().record(PerfMetrics.STAGE_API_NUTRITION_ATTEMPT, SystemClock.elapsedRealtime() - startMs);
+                return data;
+            } else {
+                String errorBody = response.body() != null ? response.body().string() : "No response body";
+                Log.e(TAG, "Zhipu API request failed in fetchFoodData: " + response.code() + " - " + response.message() + ", body: " + errorBody);
+                return null;
+            }
+        } catch (IOException e) {
+            if (handle.isCancelled()) {
+                // 对冲中落败的一方
+                Log.d(TAG, "Nutrition attempt cancelled for " + foodName);
+            } else {
+                Log.e(TAG, "Exception during API call: " + e.getMessage(), e);
+            }
+            return null;
         }
     }
 
     private class FetchDailyFoodTask implements Callable<DailyFoodData> {
         private final List<MealEntry> meals;
         private final OnDailyDataFetchedListener listener;
+        // 每个食物每 100g 的数据（缓存、接口或估算）；交付后由升级线程写入、建议线程读取
+        private final Map<String, FoodData> per100g = new ConcurrentHashMap<>();
+        // 软截止时仍未返回、暂用估算值的查询
+        private final Map<String, Lookup> provisional = new HashMap<>();
+        private UserProfile profile;
+        private double recommendedCalories;
+        private volatile String advice;
+        // 最近一次交付的结果中仍为估算值的食物
+        private volatile Set<String> stillProvisional = Collections.emptySet();
+        private volatile boolean upgradeStarted;
+        private boolean abandoned;
 
         FetchDailyFoodTask(List<MealEntry> meals, OnDailyDataFetchedListener listener) {
             if (listener == null || meals == null) {
@@ -361,36 +965,54 @@ public class NutritionDatabase extends SQLiteOpenHelper {
         @Override
         public DailyFoodData call() throws Exception {
             Log.d(TAG, "Starting FetchDailyFoodTask");
-            Map<String, List<FoodData>> mealData = new HashMap<>();
-            mealData.put("breakfast", new ArrayList<>());
-            mealData.put("lunch", new ArrayList<>());
-            mealData.put("dinner", new ArrayList<>());
-            double totalCalories = 0, totalProtein = 0, totalFat = 0, totalCarb = 0;
 
-            for (MealEntry meal : meals) {
-                FoodData foodData = fetchFoodDataFromZhipu(meal.foodName, meal.grams);
-                if (foodData != null) {
-                    String mealType = meal.mealType != null ? meal.mealType : "breakfast";
-                    mealData.computeIfAbsent(mealType, k -> new ArrayList<>()).add(foodData);
-                    totalCalories += foodData.calories;
-                    totalProtein += foodData.protein;
-                    totalFat += foodData.fat;
-                    totalCarb += foodData.carb;
-                } else {
-                    Log.w(TAG, "No data fetched for: " + meal.foodName);
-                    foodData = getDefaultFoodData(meal.foodName, meal.grams);
-                    if (foodData != null) {
-                        String mealType = meal.mealType != null ? meal.mealType : "breakfast";
-                        mealData.computeIfAbsent(mealType, k -> new ArrayList<>()).add(foodData);
-                        totalCalories += foodData.calories;
-                        totalProtein += foodData.protein;
-                        totalFat += foodData.fat;
-                        totalCarb += foodData.carb;
+            // 先查缓存；未命中的食物（同名只查一次）交给调度器并发请求，由它控制速率与并发
+            Map<String, Lookup> pending = new HashMap<>();
+            try {
+                for (MealEntry meal : meals) {
+                    if (per100g.containsKey(meal.foodName) || pending.containsKey(meal.foodName)) {
+                        continue;
+                    }
+                    FoodData cachedData = getCachedFoodData(meal.foodName);
+                    if (cachedData != null) {
+                        Log.d(TAG, "Using cached data for: " + meal.foodName);
+                        per100g.put(meal.foodName, cachedData);
+                    } else {
+                        // 输入时已发出的预取会被直接复用
+                        pending.put(meal.foodName, lookupFood(meal.foodName, ApiScheduler.Priority.NORMAL));
                     }
                 }
+
+                // 超过软截止时间仍未返回的食物先用本地估算值，查询留给 upgradeProvisional() 继续等待
+                long softDeadlineMs = SystemClock.elapsedRealtime() + BuildConfig.NUTRITION_SOFT_DEADLINE_MS;
+                for (Map.Entry<String, Lookup> entry : pending.entrySet()) {
+                    String foodName = entry.getKey();
+                    Lookup lookup = entry.getValue();
+                    FoodData resolved;
+                    try (PerfMetrics.Span ignored = PerfMetrics.get().begin(PerfMetrics.STAGE_FOOD_RESOLVE)) {
+                        resolved = resolvePending(foodName, lookup, softDeadlineMs, NutritionDatabase.this);
+                    }
+                    if (resolved == null && retainProvisional(foodName, lookup)) {
+                        Log.w(TAG, "Nutrition lookup for " + foodName + " missed the soft deadline, using a local estimate");
+                        PerfMetrics.get().increment(PerfMetrics.COUNT_PROVISIONAL_FOOD);
+                        resolved = estimateFoodData(foodName);
+                    } else if (resolved == null) {
+                        resolved = getDefaultFoodData(foodName, 100, NutritionDatabase.this);
+                    }
+                    per100g.put(foodName, resolved);
+                }
+            } finally {
+                // 超时或被中断时不再等待剩余请求（没有其他使用者的查询会被取消）
+                for (Lookup lookup : pending.values()) {
+                    lookup.release();
+                }
             }
+            FoodColumns foods = buildColumns();
+            FoodColumns.Totals totals = foods.aggregate();
 
-            UserProfile profile = getUserProfile();
+            try (PerfMetrics.Span ignored = PerfMetrics.get().begin(PerfMetrics.STAGE_PROFILE_LOOKUP)) {
+                profile = getUserProfile();
+            }
             if (profile == null) {
                 Log.w(TAG, "User profile not found, using default values");
                 profile = new UserProfile(70.0, 170.0, 30, "male", "maintain");
@@ -398,91 +1020,158 @@ public class NutritionDatabase extends SQLiteOpenHelper {
 
             double bmr = calculateBMR(profile.weight, profile.height, profile.age, profile.gender);
             double activityFactor = "maintain".equals(profile.goal) ? 1.2 : "lose".equals(profile.goal) ? 1.1 : 1.375;
-            double recommendedCalories = bmr * activityFactor;
+            recommendedCalories = bmr * activityFactor;
 
-            double breakfastCalories = mealData.get("breakfast").stream().mapToDouble(fd -> fd.calories).sum();
-            double lunchCalories = mealData.get("lunch").stream().mapToDouble(fd -> fd.calories).sum();
-            double dinnerCalories = mealData.get("dinner").stream().mapToDouble(fd -> fd.calories).sum();
+            // 先交付本地建议，大模型建议在 startUpgrade() 中异步获取
+            try (PerfMetrics.Span ignored = PerfMetrics.get().begin(PerfMetrics.STAGE_LOCAL_ADVICE)) {
+                advice = AdviceEngine.get(appContext).generate(profile, recommendedCalories, totals, currentHour(),
+                        getOptimizerCandidates());
+            }
+            stillProvisional = new HashSet<>(provisional.keySet());
+            return new DailyFoodData(foods, totals, recommendedCalories, advice, stillProvisional);
+        }
 
-            String advice = fetchPersonalizedAdviceFromZhipu(totalCalories, recommendedCalories, breakfastCalories, lunchCalories, dinnerCalories, profile.goal);
-            List<FoodData> combinedFoodData = mealData.values().stream()
-                    .flatMap(List::stream)
-                    .collect(Collectors.toList());
-            return new DailyFoodData(combinedFoodData, totalCalories, totalProtein, totalFat, totalCarb, recommendedCalories, advice, breakfastCalories, lunchCalories, dinnerCalories);
+        /**
+         * 结果交付之后调用：有估算值时在后台继续等待这些查询，拿到接口数据后重新汇总并回调 onDataUpgraded；
+         * 启用大模型建议时随后按最终汇总请求，成功后替换本地建议并再次回调。
+         */
+        void startUpgrade() {
+            upgradeStarted = true;
+            if (!provisional.isEmpty()) {
+                upgradeExecutor.execute(this::upgradeProvisional);
+            }
+            if (BuildConfig.LLM_ADVICE_ENABLED) {
+                adviceExecutor.execute(this::layerRemoteAdvice);
+            }
         }
 
-        private FoodData fetchFoodDataFromZhipu(String foodName, double grams) {
-            FoodData cachedData = getCachedFoodData(foodName);
-            if (cachedData != null) {
-                Log.d(TAG, "Using cached data for: " + foodName);
-                return scaleFoodData(cachedData, grams);
+        private synchronized boolean retainProvisional(String foodName, Lookup lookup) {
+            if (abandoned || !lookup.retain()) {
+                return false;
             }
+            provisional.put(foodName, lookup);
+            return true;
+        }
 
-            String apiUrl = "https://open.bigmodel.cn/api/paas/v4/chat/completions";
-            String prompt = "Provide the nutrition data per 100g for the food '" + foodName + "' (translate to English if needed). Return in this exact format: 'Calories: X kcal, Protein: Y g, Fat: Z g, Carbohydrates: W g' where X, Y, Z, W are numbers.";
-            JSONObject message = new JSONObject();
-            try {
-                message.put("role", "user");
-                message.put("content", prompt);
-            } catch (JSONException e) {
-                Log.e(TAG, "Failed to create JSON message in fetchFoodData: " + e.getMessage(), e);
-                return getDefaultFoodData(foodName, grams);
+        /**
+         * 结果未能交付时调用：释放 call() 中保留的查询，之后也不再保留新的查询。
+         */
+        synchronized void abandon() {
+            abandoned = true;
+            for (Lookup lookup : provisional.values()) {
+                lookup.release();
             }
+            provisional.clear();
+        }
 
-            JSONArray messages = new JSONArray();
-            messages.put(message);
+        /**
+         * 升级与建议在不同线程完成，各自更新后按当前的营养数据与建议整体交付一次；
+         * 加锁保证最后一次交付同时包含两者的最新结果。
+         */
+        private synchronized void deliverUpgrade() {
+            FoodColumns foods = buildColumns();
+            listener.onDataUpgraded(new DailyFoodData(foods, foods.aggregate(), recommendedCalories, advice, stillProvisional));
+        }
 
-            JSONObject requestBody = new JSONObject();
+        /**
+         * 只请求接口、不访问数据库，可与调用方的其他操作并发。
+         */
+        private void layerRemoteAdvice() {
+            FoodColumns foods = buildColumns();
+            FoodColumns.Totals totals = foods.aggregate();
+            String remoteAdvice;
+            try (PerfMetrics.Span ignored = PerfMetrics.get().begin(PerfMetrics.STAGE_API_ADVICE)) {
+                remoteAdvice = fetchPersonalizedAdviceFromZhipu(totals.calories, recommendedCalories,
+                        totals.mealCalories(FoodColumns.BREAKFAST), totals.mealCalories(FoodColumns.LUNCH),
+                        totals.mealCalories(FoodColumns.DINNER), profile.goal);
+            }
+            if (remoteAdvice == null) {
+                // 保留已交付的本地建议
+                PerfMetrics.get().increment(PerfMetrics.COUNT_FALLBACK_ADVICE);
+                return;
+            }
+            advice = remoteAdvice;
+            deliverUpgrade();
+        }
+
+        private int currentHour() {
+            return Calendar.getInstance(TimeZone.getTimeZone("Asia/Shanghai")).get(Calendar.HOUR_OF_DAY);
+        }
+
+        private void upgradeProvisional() {
+            long deadlineMs = SystemClock.elapsedRealtime() + TimeUnit.SECONDS.toMillis(TASK_TIMEOUT_SECONDS);
+            Set<String> stillProvisional = new HashSet<>();
+            // 结果交付后任务的 helper 仍在被调用方其他线程使用（每次操作后都会关闭连接），升级写缓存用单独的实例
+            NutritionDatabase upgradeDb = new NutritionDatabase(appContext);
             try {
-                requestBody.put("model", "glm-4");
-                requestBody.put("messages", messages);
-                requestBody.put("max_tokens", 200);
-                requestBody.put("temperature", 0.7);
-                requestBody.put("top_p", 0.9);
-            } catch (JSONException e) {
-                Log.e(TAG, "Failed to create JSON request body in fetchFoodData: " + e.getMessage(), e);
-                return getDefaultFoodData(foodName, grams);
-            }
-
-            Request request = new Request.Builder()
-                    .url(apiUrl)
-                    .addHeader("Authorization", "Bearer " + BuildConfig.ZHIPU_API_KEY)
-                    .post(RequestBody.create(MediaType.parse("application/json"), requestBody.toString()))
-                    .build();
-
-            try (Response response = client.newCall(request).execute()) {
-                if (response.isSuccessful()) {
-                    String responseText = response.body() != null ? response.body().string() : "";
-                    Log.d(TAG, "Zhipu API Response for Nutrition: " + responseText);
-                    if (responseText.isEmpty()) {
-                        Log.w(TAG, "Empty response from Zhipu API for " + foodName);
-                        return getDefaultFoodData(foodName, grams);
-                    }
-                    double calories = extractNutrient(responseText, "Calories");
-                    double protein = extractNutrient(responseText, "Protein");
-                    double fat = extractNutrient(responseText, "Fat");
-                    double carb = extractNutrient(responseText, "Carbohydrates");
-
-                    if (calories == 0.0) {
-                        Log.w(TAG, "Failed to fetch calories for " + foodName + ", using default data");
-                        return getDefaultFoodData(foodName, grams);
+                for (Map.Entry<String, Lookup> entry : provisional.entrySet()) {
+                    FoodData fetched = resolvePending(entry.getKey(), entry.getValue(), deadlineMs, upgradeDb);
+                    if (fetched != null) {
+                        per100g.put(entry.getKey(), fetched);
+                        PerfMetrics.get().increment(PerfMetrics.COUNT_PROVISIONAL_UPGRADED);
+                    } else {
+                        stillProvisional.add(entry.getKey());
                     }
-
-                    saveToLocalDatabase(foodName, calories, protein, fat, carb);
-                    return scaleFoodData(new FoodData(foodName, calories, protein, fat, carb), grams);
-                } else {
-                    String errorBody = response.body() != null ? response.body().string() : "No response body";
-                    Log.e(TAG, "Zhipu API request failed in fetchFoodData: " + response.code() + " - " + response.message() + ", body: " + errorBody);
-                    return getDefaultFoodData(foodName, grams);
                 }
-            } catch (IOException e) {
-                Log.e(TAG, "Exception during API call: " + e.getMessage(), e);
-                return getDefaultFoodData(foodName, grams);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                upgradeDb.close();
+                for (Lookup lookup : provisional.values()) {
+                    lookup.release();
+                }
+            }
+            if (stillProvisional.size() == provisional.size()) {
+                Log.w(TAG, "No provisional foods could be upgraded");
+                return;
+            }
+            this.stillProvisional = stillProvisional;
+            deliverUpgrade();
+        }
+
+        private FoodColumns buildColumns() {
+            FoodColumns foods = new FoodColumns(meals.size());
+            for (MealEntry meal : meals) {
+                FoodData base = per100g.get(meal.foodName);
+                FoodData foodData = scaleFoodData(new FoodData(base.name, base.calories, base.protein, base.fat, base.carb), meal.grams);
+                foods.add(foodData.name, meal.mealType, foodData.calories, foodData.protein, foodData.fat, foodData.carb);
             }
+            return foods;
         }
 
+        /**
+         * 等待某个食物的查询直到 deadlineMs，成功后通过 store 写入缓存；查询失败时使用默认值，超时返回 null。
+         */
+        private FoodData resolvePending(String foodName, Lookup lookup, long deadlineMs, NutritionDatabase store)
+                throws InterruptedException {
+            FoodData fetched = null;
+            boolean save = false;
+            try {
+                fetched = lookup.get(Math.max(0, deadlineMs - SystemClock.elapsedRealtime()), TimeUnit.MILLISECONDS);
+                save = lookup.claimSave();
+            } catch (TimeoutException e) {
+                return null;
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Nutrition lookup failed for " + foodName + ": " + e.getCause(), e.getCause());
+            } catch (CancellationException e) {
+                // 复用的预取在输入变化时被取消了，直接重新请求
+                fetched = requestNutrition(foodName, ApiScheduler.Priority.NORMAL);
+                save = true;
+            }
+            if (fetched == null) {
+                return getDefaultFoodData(foodName, 100, store);
+            }
+            if (save) {
+                store.saveToLocalDatabase(foodName, fetched.calories, fetched.protein, fetched.fat, fetched.carb);
+            }
+            return fetched;
+        }
+
+        /**
+         * 请求大模型的个性化建议，任何失败都返回 null（调用方保留本地建议）。
+         */
         private String fetchPersonalizedAdviceFromZhipu(double totalCalories, double recommendedCalories, double breakfastCalories, double lunchCalories, double dinnerCalories, String goal) {
-            String apiUrl = "https://open.bigmodel.cn/api/paas/v4/chat/completions";
             Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("Asia/Shanghai"));
             SimpleDateFormat sdf = new SimpleDateFormat("HH:mm 'CST' 'on' yyyy-MM-dd");
             sdf.setTimeZone(TimeZone.getTimeZone("Asia/Shanghai"));
@@ -517,7 +1206,7 @@ public class NutritionDatabase extends SQLiteOpenHelper {
                 message.put("content", prompt);
             } catch (JSONException e) {
                 Log.e(TAG, "Failed to create JSON message in fetchAdvice: " + e.getMessage(), e);
-                return generateDefaultAdvice(totalCalories, recommendedCalories, breakfastCalories, lunchCalories, dinnerCalories, goal);
+                return null;
             }
 
             JSONArray messages = new JSONArray();
@@ -525,171 +1214,78 @@ public class NutritionDatabase extends SQLiteOpenHelper {
 
             JSONObject requestBody = new JSONObject();
             try {
-                requestBody.put("model", "glm-4");
+                requestBody.put("model", ModelRouter.modelFor(ModelRouter.Task.ADVICE));
                 requestBody.put("messages", messages);
                 requestBody.put("max_tokens", 500);
                 requestBody.put("temperature", 0.7);
                 requestBody.put("top_p", 0.9);
             } catch (JSONException e) {
                 Log.e(TAG, "Failed to create JSON request body in fetchAdvice: " + e.getMessage(), e);
-                return generateDefaultAdvice(totalCalories, recommendedCalories, breakfastCalories, lunchCalories, dinnerCalories, goal);
+                return null;
             }
 
-            Request request = new Request.Builder()
-                    .url(apiUrl)
-                    .addHeader("Authorization", "Bearer " + BuildConfig.ZHIPU_API_KEY)
-                    .post(RequestBody.create(MediaType.parse("application/json"), requestBody.toString()))
-                    .build();
+            Request request = ZhipuClient.newChatRequest(requestBody);
 
-            try (Response response = client.newCall(request).execute()) {
-                String responseText = response.body() != null ? response.body().string() : "";
-                Log.d(TAG, "Zhipu API Response for Advice: " + responseText);
+            try (Response response = ZhipuClient.execute(request, ApiScheduler.Priority.INTERACTIVE)) {
                 if (!response.isSuccessful()) {
-                    Log.e(TAG, "Zhipu API request failed in fetchAdvice: " + response.code() + " - " + response.message() + ", body: " + responseText);
+                    String errorBody = response.body() != null ? response.body().string() : "No response body";
+                    Log.e(TAG, "Zhipu API request failed in fetchAdvice: " + response.code() + " - " + response.message() + ", body: " + errorBody);
+                    PerfMetrics.get().increment(PerfMetrics.COUNT_API_ADVICE_FAILURE);
                     if (response.code() == 401) {
-                        return "API 密钥无效，请检查 ZHIPU_API_KEY 或联系 Zhipu 支持";
+                        Log.e(TAG, "Invalid ZHIPU_API_KEY, keeping local advice");
                     } else if (response.code() == 402) {
-                        return "Zhipu API 账户余额不足，请充值后重试";
+                        Log.e(TAG, "Zhipu account balance is insufficient, keeping local advice");
                     }
-                    return generateDefaultAdvice(totalCalories, recommendedCalories, breakfastCalories, lunchCalories, dinnerCalories, goal);
+                    return null;
                 }
 
-                if (responseText.isEmpty()) {
-                    Log.w(TAG, "Empty response from Zhipu API for advice");
-                    return generateDefaultAdvice(totalCalories, recommendedCalories, breakfastCalories, lunchCalories, dinnerCalories, goal);
-                }
-
-                try {
-                    JSONObject json = new JSONObject(responseText);
-                    if (!json.has("choices")) {
-                        Log.e(TAG, "Response JSON does not contain 'choices' key: " + responseText);
-                        return generateDefaultAdvice(totalCalories, recommendedCalories, breakfastCalories, lunchCalories, dinnerCalories, goal);
-                    }
-                    JSONArray choices = json.getJSONArray("choices");
-                    if (choices.length() == 0) {
-                        Log.e(TAG, "Choices array is empty: " + responseText);
-                        return generateDefaultAdvice(totalCalories, recommendedCalories, breakfastCalories, lunchCalories, dinnerCalories, goal);
-                    }
-                    JSONObject choice = choices.getJSONObject(0);
-                    if (!choice.has("message")) {
-                        Log.e(TAG, "Choice does not contain 'message' key: " + responseText);
-                        return generateDefaultAdvice(totalCalories, recommendedCalories, breakfastCalories, lunchCalories, dinnerCalories, goal);
-                    }
-                    JSONObject messageObj = choice.getJSONObject("message");
-                    if (!messageObj.has("content")) {
-                        Log.e(TAG, "Message does not contain 'content' key: " + responseText);
-                        return generateDefaultAdvice(totalCalories, recommendedCalories, breakfastCalories, lunchCalories, dinnerCalories, goal);
-                    }
-                    String content = messageObj.getString("content");
-                    return content != null && !content.trim().isEmpty() ? content : "无法获取建议，请稍后重试";
-                } catch (JSONException e) {
-                    Log.e(TAG, "Failed to parse Zhipu API response: " + e.getMessage() + ", response: " + responseText, e);
-                    return generateDefaultAdvice(totalCalories, recommendedCalories, breakfastCalories, lunchCalories, dinnerCalories, goal);
+                String content = ZhipuClient.readContent(response);
+                if (content == null || content.trim().isEmpty()) {
+                    Log.w(TAG, "No advice content in Zhipu API response");
+                    return null;
                 }
+                PerfMetrics.get().increment(PerfMetrics.COUNT_API_ADVICE_SUCCESS);
+                return content;
             } catch (IOException e) {
                 Log.e(TAG, "Exception during API call: " + e.getMessage(), e);
-                return generateDefaultAdvice(totalCalories, recommendedCalories, breakfastCalories, lunchCalories, dinnerCalories, goal);
-            }
-        }
-
-        private double extractNutrient(String responseText, String nutrient) {
-            Log.d(TAG, "Extracting nutrient: " + nutrient + ", from response: " + responseText);
-            String pattern = "(?i)" + Pattern.quote(nutrient) + ":\\s*(\\d+\\.?\\d*)\\s*(kcal|g)?";
-            try {
-                Pattern p = Pattern.compile(pattern);
-                Matcher m = p.matcher(responseText);
-                if (m.find()) {
-                    double value = Double.parseDouble(m.group(1));
-                    Log.d(TAG, "Extracted " + nutrient + ": " + value);
-                    return value;
-                }
-                Log.w(TAG, "Failed to extract " + nutrient + " from: " + responseText);
-                return 0.0;
-            } catch (IllegalArgumentException e) {
-                Log.e(TAG, "Invalid pattern for nutrient: " + nutrient + ", error: " + e.getMessage(), e);
-                return 0.0;
+                PerfMetrics.get().increment(PerfMetrics.COUNT_API_ADVICE_FAILURE);
+                return null;
             }
         }
 
+        // 调用方传入的都是刚创建的对象，直接原地换算，不再额外分配
         private FoodData scaleFoodData(FoodData foodData, double grams) {
             double ratio = grams / 100.0;
-            return new FoodData(foodData.name, foodData.calories * ratio, foodData.protein * ratio,
-                    foodData.fat * ratio, foodData.carb * ratio);
+            foodData.calories *= ratio;
+            foodData.protein *= ratio;
+            foodData.fat *= ratio;
+            foodData.carb *= ratio;
+            return foodData;
         }
 
-        private FoodData getDefaultFoodData(String foodName, double grams) {
-            double calories, protein, fat, carb;
+        private FoodData getDefaultFoodData(String foodName, double grams, NutritionDatabase store) {
+            PerfMetrics.get().increment(PerfMetrics.COUNT_FALLBACK_FOOD);
+            FoodData estimate = estimateFoodData(foodName);
+            store.saveToLocalDatabase(foodName, estimate.calories, estimate.protein, estimate.fat, estimate.carb, true);
+            return scaleFoodData(estimate, grams);
+        }
+
+        /**
+         * 按名称关键字粗略估算每 100g 的营养数据，不写入缓存。
+         */
+        private FoodData estimateFoodData(String foodName) {
             String name = foodName.toLowerCase();
+            double[] values;
             if (name.contains("egg") || name.contains("鸡蛋")) {
-                calories = 68; protein = 6.3; fat = 5.0; carb = 0.5;
+                values = ESTIMATE_VALUES[0];
             } else if (name.contains("pork") || name.contains("猪肉")) {
-                calories = 250; protein = 26; fat = 15; carb = 0;
+                values = ESTIMATE_VALUES[1];
             } else if (name.contains("rice") || name.contains("米饭")) {
-                calories = 130; protein = 2.7; fat = 0.3; carb = 28;
+                values = ESTIMATE_VALUES[2];
             } else {
-                calories = 50; protein = 1; fat = 1; carb = 10;
+                values = ESTIMATE_VALUES[3];
             }
-            saveToLocalDatabase(foodName, calories, protein, fat, carb);
-            return scaleFoodData(new FoodData(foodName, calories, protein, fat, carb), grams);
-        }
-
-        private String generateDefaultAdvice(double totalCalories, double recommendedCalories, double breakfastCalories, double lunchCalories, double dinnerCalories, String goal) {
-            StringBuilder advice = new StringBuilder();
-            double remainingCalories = recommendedCalories - totalCalories;
-
-            Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("Asia/Shanghai"));
-            int hour = calendar.get(Calendar.HOUR_OF_DAY);
-            String currentMealPhase = hour < 10 ? "breakfast" : hour < 16 ? "lunch" : "dinner";
-            String nextMeal = currentMealPhase.equals("breakfast") ? "lunch" : currentMealPhase.equals("lunch") ? "dinner" : null;
-            int mealsCompleted = 0;
-            if (breakfastCalories > 0) mealsCompleted++;
-            if (lunchCalories > 0) mealsCompleted++;
-            if (dinnerCalories > 0) mealsCompleted++;
-
-            advice.append("您摄入的热量为").append(String.format("%.1f", totalCalories)).append("千卡，推荐热量为").append(String.format("%.1f", recommendedCalories)).append("千卡\n");
-
-            if (mealsCompleted < 3 && nextMeal != null && remainingCalories > 0) {
-                advice.append("建议下一餐（").append(nextMeal).append("）：\n");
-                if ("lose".equals(goal)) {
-                    advice.append("鸡胸肉200g约300千卡\n蔬菜沙拉150g约50千卡\n");
-                } else if ("gain".equals(goal)) {
-                    advice.append("牛肉200g约500千卡\n米饭200g约260千卡\n鸡蛋2个约136千卡\n");
-                } else {
-                    advice.append("鸡胸肉200g约300千卡\n米饭150g约195千卡\n蔬菜150g约50千卡\n");
-                }
-            } else {
-                advice.append("明天的健康饮食建议：\n");
-                if ("lose".equals(goal)) {
-                    advice.append("早餐：燕麦50g约190千卡，鸡蛋2个约136千卡\n");
-                    advice.append("午餐：鸡胸肉200g约300千卡，蔬菜150g约50千卡\n");
-                    advice.append("晚餐：三文鱼150g约300千卡，蔬菜150g约50千卡\n");
-                } else if ("gain".equals(goal)) {
-                    advice.append("早餐：燕麦50g约190千卡，鸡蛋3个约204千卡\n");
-                    advice.append("午餐：牛肉200g约500千卡，米饭200g约260千卡\n");
-                    advice.append("晚餐：鸡胸肉200g约300千卡，红薯150g约130千卡\n");
-                } else {
-                    advice.append("早餐：燕麦50g约190千卡，鸡蛋2个约136千卡\n");
-                    advice.append("午餐：鸡胸肉200g约300千卡，米饭150g约195千卡\n");
-                    advice.append("晚餐：三文鱼150g约300千卡，蔬菜150g约50千卡\n");
-                }
-            }
-
-            advice.append("\n运动建议：\n");
-            if (totalCalories > recommendedCalories) {
-                double excessCalories = totalCalories - recommendedCalories;
-                advice.append("您的热量摄入超标").append(String.format("%.1f", excessCalories)).append("千卡，建议以下运动：\n");
-                advice.append("跑步30分钟消耗约300千卡\n快走1小时消耗约200千卡\n游泳45分钟消耗约400千卡\n");
-            } else {
-                if ("lose".equals(goal)) {
-                    advice.append("跑步30分钟消耗约300千卡\n游泳45分钟消耗约400千卡\n");
-                } else if ("gain".equals(goal)) {
-                    advice.append("力量训练，如深蹲、卧推，每次3组，每组10次\n");
-                } else {
-                    advice.append("快走30分钟消耗约150千卡\n每周3次瑜伽\n");
-                }
-            }
-
-            return advice.toString();
+            return new FoodData(foodName, values[0], values[1], values[2], values[3]);
         }
     }
 
@@ -701,9 +1297,65 @@ public class NutritionDatabase extends SQLiteOpenHelper {
         }
     }
 
+    public interface DayConsumer {
+        void onDay(DayNutrition day);
+    }
+
     public interface OnDailyDataFetchedListener {
         void onDataFetched(DailyFoodData dailyFoodData, double totalCalories, double totalProtein, double totalFat, double totalCarb, double recommendedCalories, String advice);
         void onError(String errorMessage);
+
+        /**
+         * 先前交付的结果有了更新（估算值的食物拿到了接口数据，或大模型建议替换了本地建议），在后台线程回调更新后的结果。
+         */
+        default void onDataUpgraded(DailyFoodData dailyFoodData) {
+        }
+    }
+
+    /**
+     * 一次按食物名共享的营养查询：提交分析与输入时的预取可以等待同一个请求，结果只写一次缓存。
+     * 每个使用者 retain/release 一次，最后一个使用者释放时如果还没完成就取消（中断其排队或请求）。
+     */
+    static final class Lookup extends FutureTask<FoodData> {
+        private final String foodName;
+        private final AtomicInteger users = new AtomicInteger();
+        private final AtomicBoolean saved = new AtomicBoolean();
+
+        Lookup(String foodName, Callable<FoodData> callable) {
+            super(callable);
+            this.foodName = foodName;
+        }
+
+        boolean retain() {
+            while (true) {
+                int current = users.get();
+                if (current < 0 || isCancelled()) {
+                    return false;
+                }
+                if (users.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            // 计数归零后置为 -1，之后不再允许新的使用者加入
+            if (users.decrementAndGet() == 0 && users.compareAndSet(0, -1)) {
+                cancel(true);
+            }
+        }
+
+        /**
+         * 第一个调用者返回 true，由它负责把结果写入缓存。
+         */
+        boolean claimSave() {
+            return saved.compareAndSet(false, true);
+        }
+
+        @Override
+        protected void done() {
+            inFlightLookups.remove(foodName, this);
+        }
     }
 
     public static class FoodData {
@@ -738,23 +1390,99 @@ public class NutritionDatabase extends SQLiteOpenHelper {
     }
 
     public static class DailyFoodData {
-        public List<FoodData> foodDataList;
+        // 当天的食物按列存储，见 FoodColumns
+        public final FoodColumns foods;
         public double totalCalories, totalProtein, totalFat, totalCarb;
         public double recommendedCalories;
         public String advice;
         public double breakfastCalories, lunchCalories, dinnerCalories;
+        // 暂用本地估算值的食物名，稍后可能通过 onDataUpgraded 更新
+        public final Set<String> provisionalFoods;
 
-        DailyFoodData(List<FoodData> foodDataList, double totalCalories, double totalProtein, double totalFat, double totalCarb, double recommendedCalories, String advice, double breakfastCalories, double lunchCalories, double dinnerCalories) {
-            this.foodDataList = foodDataList;
-            this.totalCalories = totalCalories;
-            this.totalProtein = totalProtein;
-            this.totalFat = totalFat;
-            this.totalCarb = totalCarb;
+        DailyFoodData(FoodColumns foods, FoodColumns.Totals totals, double recommendedCalories, String advice) {
+            this(foods, totals, recommendedCalories, advice, Collections.emptySet());
+        }
+
+        DailyFoodData(FoodColumns foods, FoodColumns.Totals totals, double recommendedCalories, String advice, Set<String> provisionalFoods) {
+            this.foods = foods;
+            this.provisionalFoods = Collections.unmodifiableSet(new HashSet<>(provisionalFoods));
+            this.totalCalories = totals.calories;
+            this.totalProtein = totals.protein;
+            this.totalFat = totals.fat;
+            this.totalCarb = totals.carb;
             this.recommendedCalories = recommendedCalories;
             this.advice = advice;
-            this.breakfastCalories = breakfastCalories;
-            this.lunchCalories = lunchCalories;
-            this.dinnerCalories = dinnerCalories;
+            this.breakfastCalories = totals.mealCalories(FoodColumns.BREAKFAST);
+            this.lunchCalories = totals.mealCalories(FoodColumns.LUNCH);
+            this.dinnerCalories = totals.mealCalories(FoodColumns.DINNER);
+        }
+    }
+
+    public static class DayNutrition {
+        public final String day; // MM月dd日
+        public final FoodColumns foods;
+        public final FoodColumns.Totals totals;
+        public final int unresolvedFoods;
+
+        DayNutrition(String day, FoodColumns foods, int unresolvedFoods) {
+            this.day = day;
+            this.foods = foods;
+            this.totals = foods.aggregate();
+            this.unresolvedFoods = unresolvedFoods;
+        }
+    }
+
+    public static class NutrientTotals {
+        public final String day; // MM月dd日
+        public final String mealType;
+        public final double calories, protein, fat, carb;
+        public final int entries;
+        public final int unresolvedEntries;
+
+        NutrientTotals(String day, String mealType, double calories, double protein, double fat, double carb, int entries, int unresolvedEntries) {
+            this.day = day;
+            this.mealType = mealType;
+            this.calories = calories;
+            this.protein = protein;
+            this.fat = fat;
+            this.carb = carb;
+            this.entries = entries;
+            this.unresolvedEntries = unresolvedEntries;
+        }
+    }
+
+    public static class RangeReport implements Iterable<DayNutrition> {
+        private final List<DayNutrition> days = new ArrayList<>();
+        public double totalCalories, totalProtein, totalFat, totalCarb;
+        public double[] mealCalories = new double[0];
+        public int unresolvedFoods;
+
+        void add(DayNutrition day) {
+            days.add(day);
+            totalCalories += day.totals.calories;
+            totalProtein += day.totals.protein;
+            totalFat += day.totals.fat;
+            totalCarb += day.totals.carb;
+            if (mealCalories.length < day.totals.mealCalories.length) {
+                mealCalories = Arrays.copyOf(mealCalories, day.totals.mealCalories.length);
+            }
+            for (int i = 0; i < day.totals.mealCalories.length; i++) {
+                mealCalories[i] += day.totals.mealCalories[i];
+            }
+            unresolvedFoods += day.unresolvedFoods;
+        }
+
+        public int dayCount() {
+            return days.size();
+        }
+
+        public double averageDailyCalories() {
+            return days.isEmpty() ? 0 : totalCalories / days.size();
+        }
+
+        @Override
+        public Iterator<DayNutrition> iterator() {
+            return Collections.unmodifiableList(days).iterator();
         }
     }
 
@@ -773,7 +1501,10 @@ public class NutritionDatabase extends SQLiteOpenHelper {
     }
 
     public static class LogEntry {
+        public long id;
         public Date timestamp;
+        public String timestampText;
+        public int day; // yyyyMMdd，见 LOG_DAY
         public String foodName;
         public double grams;
         public String mealType;
@@ -784,5 +1515,11 @@ public class NutritionDatabase extends SQLiteOpenHelper {
             this.grams = grams;
             this.mealType = mealType;
         }
+
+        LogEntry(long id, String timestampText, Date timestamp, String foodName, double grams, String mealType) {
+            this(timestamp, foodName, grams, mealType);
+            this.id = id;
+            this.timestampText = timestampText;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.example.fitnesee;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * 输入时的营养数据预取：某一行的食物名停止输入一小段时间后，在后台以低优先级查询并写入缓存，
+ * 提交时这些食物大多已经命中缓存，只剩建议请求。同一行的名称再次变化时取消尚未完成的预取。
+ * 所有方法都在主线程调用。
+ */
+public final class NutritionPrefetcher {
+    private static final String TAG = "NutritionPrefetcher";
+    private static final long DEBOUNCE_MS = 700;
+
+    private final Context appContext;
+    // 每个预取都会阻塞等待接口返回，线程数与调度器的并发上限一致，后面的行不必排在前面的请求之后；
+    // 网络请求的速率仍由调度器控制
+    private final ExecutorService executor = Executors.newFixedThreadPool(ZhipuClient.MAX_CONCURRENT_REQUESTS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<Long, Runnable> scheduled = new HashMap<>();
+    private final Map<Long, Future<?>> running = new HashMap<>();
+    private boolean closed;
+
+    public NutritionPrefetcher(Context context) {
+        appContext = context.getApplicationContext();
+    }
+
+    /**
+     * 某一行的食物名发生变化：取消这一行之前的预取，防抖后为新名称发起预取。
+     */
+    public void onFoodNameChanged(long itemId, String foodName) {
+        cancel(itemId);
+        // 与提交时一致，按去掉数量后的标准名预取（“2个鸡蛋”预取“鸡蛋”）
+        String name = PortionParser.foodNameOf(foodName);
+        if (closed || name.isEmpty()) {
+            return;
+        }
+        Runnable start = () -> {
+            scheduled.remove(itemId);
+            FutureTask<Void> task = new FutureTask<Void>(() -> prefetch(name), null) {
+                @Override
+                protected void done() {
+                    // 这一行可能已经开始了新的预取，只移除自己
+                    mainHandler.post(() -> running.remove(itemId, this));
+                }
+            };
+            running.put(itemId, task);
+            executor.execute(task);
+        };
+        scheduled.put(itemId, start);
+        mainHandler.postDelayed(start, DEBOUNCE_MS);
+    }
+
+    public void cancel(long itemId) {
+        Runnable pending = scheduled.remove(itemId);
+        if (pending != null) {
+            mainHandler.removeCallbacks(pending);
+        }
+        Future<?> future = running.remove(itemId);
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+
+    public void close() {
+        closed = true;
+        for (Runnable pending : scheduled.values()) {
+            mainHandler.removeCallbacks(pending);
+        }
+        scheduled.clear();
+        for (Future<?> future : running.values()) {
+            future.cancel(true);
+        }
+        running.clear();
+        executor.shutdownNow();
+    }
+
+    private void prefetch(String foodName) {
+        // 多个预取并发进行，而 NutritionDatabase 每次操作后都会关闭连接，每个预取使用自己的实例
+        NutritionDatabase nutritionDb = new NutritionDatabase(appContext);
+        try {
+            boolean cached = nutritionDb.prefetchFoodData(foodName);
+            Log.d(TAG, "Prefetch " + foodName + (cached ? " cached" : " failed"));
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Prefetch cancelled: " + foodName);
+        } finally {
+            nutritionDb.close();
+        }
+    }
+}
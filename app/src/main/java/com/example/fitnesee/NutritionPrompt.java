@@ -0,0 +1,126 @@
+package com.example.fitnesee;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 营养查询的结构化输出模式：简短的系统提示词 + 只含食物名的用户消息，关闭采样并要求返回 JSON 对象，
+ * 输出上限按实际负载（约 30 个 token）设定。同一食物每次得到相同的请求与答案，生成更快也便于缓存。
+ */
+public final class NutritionPrompt {
+    private static final String TAG = "NutritionPrompt";
+    // 营养素折算热量允许超出给出热量的幅度（四舍五入、不同食物成分表的换算系数差异）
+    private static final double MAX_MACRO_ENERGY_RATIO = 1.3;
+    private static final double MACRO_ENERGY_SLACK_KCAL = 20;
+    // {"kcal":123.4,"protein":12.3,"fat":12.3,"carb":12.3} 约 30 个 token，留少量余量
+    static final int MAX_TOKENS = 48;
+    static final String SYSTEM_PROMPT = "You are a nutrition database. For the food named by the user "
+            + "(any language), reply with only a JSON object of values per 100 g edible portion: "
+            + "{\"kcal\":number,\"protein\":number,\"fat\":number,\"carb\":number}";
+    // 兼容旧格式或模型偶尔输出的文字："Calories: X kcal, Protein: Y g, ..."
+    private static final Pattern LEGACY_PATTERN = Pattern.compile(
+            "(?i)calories:\\s*(\\d+\\.?\\d*).*?protein:\\s*(\\d+\\.?\\d*).*?fat:\\s*(\\d+\\.?\\d*).*?carbohydrates:\\s*(\\d+\\.?\\d*)",
+            Pattern.DOTALL);
+
+    private NutritionPrompt() {
+    }
+
+    /**
+     * 模型返回了内容，但无法解析出合理的营养数据。
+     */
+    public static final class InvalidContentException extends Exception {
+        public InvalidContentException(String model) {
+            super("Invalid nutrition content from " + model);
+        }
+    }
+
+    /**
+     * 食物名去掉首尾空白并合并连续空白，使同一食物总是生成完全相同的请求。
+     */
+    public static String normalizeFoodName(String foodName) {
+        return foodName == null ? "" : foodName.trim().replaceAll("\\s+", " ");
+    }
+
+    public static JSONObject buildRequest(String foodName, String model) throws JSONException {
+        JSONArray messages = new JSONArray();
+        messages.put(new JSONObject().put("role", "system").put("content", SYSTEM_PROMPT));
+        messages.put(new JSONObject().put("role", "user").put("content", normalizeFoodName(foodName)));
+
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("model", model);
+        requestBody.put("messages", messages);
+        requestBody.put("response_format", new JSONObject().put("type", "json_object"));
+        requestBody.put("max_tokens", MAX_TOKENS);
+        // 智谱要求 temperature 大于 0；do_sample=false 时改为贪心解码，结果可复现
+        requestBody.put("do_sample", false);
+        requestBody.put("temperature", 0.01);
+        return requestBody;
+    }
+
+    /**
+     * 解析模型回复为每 100g 的营养数据；内容缺失或数值不合理时返回 null。
+     */
+    public static NutritionDatabase.FoodData parseContent(String foodName, String content) {
+        if (content == null) {
+            return null;
+        }
+        NutritionDatabase.FoodData data = parseJson(foodName, content);
+        if (data == null) {
+            data = parseLegacy(foodName, content);
+        }
+        if (data == null || !isPlausible(data)) {
+            Log.w(TAG, "Rejected nutrition content for " + foodName + ": " + content);
+            return null;
+        }
+        return data;
+    }
+
+    /**
+     * 每 100g：热量非负（水、无糖茶等为 0）且不超过纯脂肪（约 900 kcal），三大营养素非负且总重不超过 100g，
+     * 并且按 4/9/4 折算的营养素热量不明显高于给出的热量。只做单向检查：酒精、膳食纤维会让热量高于折算值。
+     */
+    static boolean isPlausible(NutritionDatabase.FoodData data) {
+        if (!(data.calories >= 0 && data.calories <= 950
+                && data.protein >= 0 && data.fat >= 0 && data.carb >= 0
+                && data.protein + data.fat + data.carb <= 101)) {
+            return false;
+        }
+        double macroCalories = data.protein * 4 + data.fat * 9 + data.carb * 4;
+        return macroCalories <= data.calories * MAX_MACRO_ENERGY_RATIO + MACRO_ENERGY_SLACK_KCAL;
+    }
+
+    private static NutritionDatabase.FoodData parseJson(String foodName, String content) {
+        String text = content.trim();
+        // 个别情况下模型仍会用 Markdown 代码块包裹
+        int open = text.indexOf('{');
+        int close = text.lastIndexOf('}');
+        if (open < 0 || close <= open) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(text.substring(open, close + 1));
+            if (!json.has("kcal")) {
+                return null;
+            }
+            return new NutritionDatabase.FoodData(foodName, json.getDouble("kcal"), json.optDouble("protein", 0),
+                    json.optDouble("fat", 0), json.optDouble("carb", 0));
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static NutritionDatabase.FoodData parseLegacy(String foodName, String content) {
+        Matcher m = LEGACY_PATTERN.matcher(content);
+        if (!m.find()) {
+            return null;
+        }
+        return new NutritionDatabase.FoodData(foodName, Double.parseDouble(m.group(1)), Double.parseDouble(m.group(2)),
+                Double.parseDouble(m.group(3)), Double.parseDouble(m.group(4)));
+    }
+}
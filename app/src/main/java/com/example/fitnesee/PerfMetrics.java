@@ -0,0 +1,275 @@
+package com.example.fitnesee;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的性能指标：各阶段耗时直方图 + 计数器，同时输出 android.os.Trace 区段，
+ * 方便在 systrace / Perfetto 中对照查看。
+ */
+public final class PerfMetrics {
+    // 阶段（直方图）
+    public static final String STAGE_SUBMISSION = "submission_total";
+    public static final String STAGE_LOG_WRITE = "sqlite_log_write";
+    public static final String STAGE_LOG_READ = "sqlite_log_read";
+    public static final String STAGE_CACHE_LOOKUP = "cache_lookup";
+    public static final String STAGE_CACHE_WRITE = "sqlite_cache_write";
+    public static final String STAGE_PROFILE_LOOKUP = "profile_lookup";
+    public static final String STAGE_FOOD_RESOLVE = "food_resolve";
+    public static final String STAGE_API_NUTRITION = "api_nutrition";
+    public static final String STAGE_API_ADVICE = "api_advice";
+    public static final String STAGE_DRAFT_RESTORE = "draft_restore";
+    public static final String STAGE_RANGE_QUERY = "sqlite_range_query";
+    public static final String STAGE_API_QUEUE_WAIT = "api_queue_wait";
+    public static final String STAGE_API_NUTRITION_ATTEMPT = "api_nutrition_attempt";
+    public static final String STAGE_LOCAL_ADVICE = "local_advice";
+    public static final String STAGE_MEAL_OPTIMIZER = "meal_optimizer";
+    // 点击提交到结果页完成首次布局，跨线程、跨界面，用异步区段记录
+    public static final String STAGE_SUBMIT_TO_RESULT = "submit_to_result";
+
+    // 计数器
+    public static final String COUNT_CACHE_HIT = "cache_hit";
+    public static final String COUNT_CACHE_MISS = "cache_miss";
+    public static final String COUNT_API_NUTRITION_SUCCESS = "api_nutrition_success";
+    public static final String COUNT_API_NUTRITION_FAILURE = "api_nutrition_failure";
+    public static final String COUNT_API_ADVICE_SUCCESS = "api_advice_success";
+    public static final String COUNT_API_ADVICE_FAILURE = "api_advice_failure";
+    public static final String COUNT_FALLBACK_FOOD = "fallback_food_default";
+    public static final String COUNT_FALLBACK_ADVICE = "fallback_advice_default";
+    public static final String COUNT_SUBMISSION_TIMEOUT = "submission_timeout";
+    public static final String COUNT_API_THROTTLED = "api_throttled_retry";
+    public static final String COUNT_API_HEDGED = "api_hedge_sent";
+    public static final String COUNT_API_HEDGE_WON = "api_hedge_won";
+    public static final String COUNT_PROVISIONAL_FOOD = "provisional_food_estimate";
+    public static final String COUNT_PROVISIONAL_UPGRADED = "provisional_food_upgraded";
+    public static final String COUNT_MODEL_ESCALATION = "model_escalation";
+
+    private static final PerfMetrics INSTANCE = new PerfMetrics();
+
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Long> asyncStarts = new ConcurrentHashMap<>();
+    private volatile long startedAtMs = System.currentTimeMillis();
+
+    private PerfMetrics() {
+    }
+
+    public static PerfMetrics get() {
+        return INSTANCE;
+    }
+
+    public void increment(String counter) {
+        add(counter, 1);
+    }
+
+    public void add(String counter, long delta) {
+        counters.computeIfAbsent(counter, k -> new AtomicLong()).addAndGet(delta);
+    }
+
+    public long getCount(String counter) {
+        AtomicLong value = counters.get(counter);
+        return value != null ? value.get() : 0;
+    }
+
+    public void record(String stage, long durationMs) {
+        histograms.computeIfAbsent(stage, k -> new Histogram()).record(durationMs);
+    }
+
+    public Histogram getHistogram(String stage) {
+        return histograms.get(stage);
+    }
+
+    /**
+     * 开始一个计时区段，需在同一线程上 close（配合 try-with-resources 使用）。
+     */
+    public Span begin(String stage) {
+        return new Span(this, stage);
+    }
+
+    /**
+     * 开始一个可在其他线程或界面结束的区段，同一阶段同时只记录一个（重复开始时以最后一次为准）。
+     * API 29 起同时输出异步 Trace 区段，供 Macrobenchmark 的 TraceSectionMetric 统计。
+     */
+    public void beginAsync(String stage) {
+        Long previous = asyncStarts.put(stage, SystemClock.elapsedRealtime());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            if (previous != null) {
+                Trace.endAsyncSection(stage, 0);
+            }
+            Trace.beginAsyncSection(stage, 0);
+        }
+    }
+
+    /**
+     * 结束 beginAsync 开始的区段；没有进行中的区段时忽略。
+     */
+    public void endAsync(String stage) {
+        Long startMs = asyncStarts.remove(stage);
+        if (startMs == null) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(stage, 0);
+        }
+        record(stage, SystemClock.elapsedRealtime() - startMs);
+    }
+
+    public void reset() {
+        counters.clear();
+        histograms.clear();
+        // 进行中的异步阶段开始于重置之前，不再计入；同时结束对应的 trace 区间
+        for (String stage : asyncStarts.keySet()) {
+            if (asyncStarts.remove(stage) != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.endAsyncSection(stage, 0);
+            }
+        }
+        startedAtMs = System.currentTimeMillis();
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject root = new JSONObject();
+        root.put("startedAt", startedAtMs);
+        root.put("exportedAt", System.currentTimeMillis());
+
+        JSONObject counterJson = new JSONObject();
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(counters).entrySet()) {
+            counterJson.put(entry.getKey(), entry.getValue().get());
+        }
+        root.put("counters", counterJson);
+
+        JSONObject histogramJson = new JSONObject();
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            histogramJson.put(entry.getKey(), entry.getValue().toJson());
+        }
+        root.put("histograms", histogramJson);
+        return root;
+    }
+
+    public String formatSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("阶段耗时 (ms)\n");
+        if (histograms.isEmpty()) {
+            sb.append("  暂无数据\n");
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram h = entry.getValue();
+            sb.append(String.format(Locale.US, "  %-20s n=%d avg=%.1f p50=%d p90=%d p99=%d max=%d\n",
+                    entry.getKey(), h.getCount(), h.getMean(), h.percentile(0.5), h.percentile(0.9),
+                    h.percentile(0.99), h.getMax()));
+        }
+        sb.append("\n计数器\n");
+        if (counters.isEmpty()) {
+            sb.append("  暂无数据\n");
+        }
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<>(counters).entrySet()) {
+            sb.append(String.format(Locale.US, "  %-28s %d\n", entry.getKey(), entry.getValue().get()));
+        }
+        return sb.toString();
+    }
+
+    public static final class Span implements AutoCloseable {
+        private final PerfMetrics metrics;
+        private final String stage;
+        private final long startMs;
+        private boolean closed;
+
+        private Span(PerfMetrics metrics, String stage) {
+            this.metrics = metrics;
+            this.stage = stage;
+            this.startMs = SystemClock.elapsedRealtime();
+            Trace.beginSection(stage);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            Trace.endSection();
+            metrics.record(stage, SystemClock.elapsedRealtime() - startMs);
+        }
+    }
+
+    /**
+     * 固定指数分桶的耗时直方图，百分位取所在桶的上界。
+     */
+    public static final class Histogram {
+        private static final long[] BOUNDS_MS = {
+                1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000
+        };
+
+        private final long[] buckets = new long[BOUNDS_MS.length + 1];
+        private long count;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max;
+
+        synchronized void record(long valueMs) {
+            int index = 0;
+            while (index < BOUNDS_MS.length && valueMs > BOUNDS_MS[index]) {
+                index++;
+            }
+            buckets[index]++;
+            count++;
+            sum += valueMs;
+            min = Math.min(min, valueMs);
+            max = Math.max(max, valueMs);
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        public synchronized long getMax() {
+            return max;
+        }
+
+        public synchronized long percentile(double p) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p * count);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return i < BOUNDS_MS.length ? Math.min(BOUNDS_MS[i], max) : max;
+                }
+            }
+            return max;
+        }
+
+        synchronized JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("count", count);
+            json.put("sum", sum);
+            json.put("min", count == 0 ? 0 : min);
+            json.put("max", max);
+            json.put("p50", percentile(0.5));
+            json.put("p90", percentile(0.9));
+            json.put("p99", percentile(0.99));
+            JSONObject bucketJson = new JSONObject();
+            for (int i = 0; i < buckets.length; i++) {
+                String key = i < BOUNDS_MS.length ? "le_" + BOUNDS_MS[i] : "le_inf";
+                bucketJson.put(key, buckets[i]);
+            }
+            json.put("buckets", bucketJson);
+            return json;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.fitnesee;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地解析食物名中的数量与份量，如“2个鸡蛋”“一碗米饭”“鸡胸肉200g”“一个半馒头”，
+ * 拆成标准食物名 + 克数后再查询，这些输入与“鸡蛋”“米饭”共用同一条每 100g 缓存，不再各自请求接口。
+ * 计数单位只按食物的默认份量表换算，表里没有该食物与单位时不做拆分，原样交给查询；去掉数量后剩下的名称
+ * 不像食物（单个字且不在份量表中，如“一碗香”“一根筋”）时同样不拆分。不依赖 Android，可在 JVM 上测试。
+ */
+public final class PortionParser {
+    private static final String NUMBER = "(\\d+(?:\\.\\d+)?|[零一二两三四五六七八九十百半]+)";
+    // 长的写在前面，避免“千克”被“克”、“kg”被“g”抢先匹配
+    private static final String UNIT = "(千克|公斤|kg|克|g|斤|两|毫升|ml|升|个|只|颗|枚|碗|杯|盒|瓶|片|根|块|份|勺|盘|包|袋|听|罐|条|串)";
+    private static final Pattern LEADING = Pattern.compile("^" + NUMBER + "\\s*" + UNIT + "(半)?\\s*的?\\s*(.+)$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TRAILING = Pattern.compile("^(.+?)\\s*" + NUMBER + "\\s*" + UNIT + "(半)?$", Pattern.CASE_INSENSITIVE);
+    private static final String CHINESE_DIGITS = "零一二三四五六七八九";
+    // 一次录入的合理上限，超出视为误输入，不做换算
+    private static final double MAX_GRAMS = 5000;
+
+    private static final Map<String, Double> MASS_UNITS = new HashMap<>();
+    private static final Map<String, Map<String, Double>> FOOD_PORTIONS = new HashMap<>();
+    private static final Map<String, String> ALIASES = new HashMap<>();
+
+    static {
+        MASS_UNITS.put("千克", 1000.0);
+        MASS_UNITS.put("公斤", 1000.0);
+        MASS_UNITS.put("kg", 1000.0);
+        MASS_UNITS.put("克", 1.0);
+        MASS_UNITS.put("g", 1.0);
+        MASS_UNITS.put("斤", 500.0);
+        MASS_UNITS.put("两", 50.0);
+        // 液体按密度 1 换算
+        MASS_UNITS.put("毫升", 1.0);
+        MASS_UNITS.put("ml", 1.0);
+        MASS_UNITS.put("升", 1000.0);
+
+        portion("蛋", 50, "个", "只", "颗", "枚");
+        portion("鸭蛋", 70, "个", "只", "颗", "枚");
+        portion("鹌鹑蛋", 10, "个", "只", "颗", "枚");
+        portion("饭", 150, "碗");
+        portion("米饭", 150, "碗");
+        portion("米饭", 200, "份");
+        portion("米饭", 250, "盒");
+        portion("粥", 250, "碗");
+        portion("面条", 250, "碗", "份");
+        portion("面", 250, "碗", "份");
+        portion("汤", 250, "碗");
+        portion("馒头", 100, "个");
+        portion("包子", 80, "个", "只");
+        portion("饺子", 20, "个", "只");
+        portion("面包", 35, "片");
+        portion("面包", 80, "个");
+        portion("吐司", 35, "片");
+        portion("苹果", 200, "个", "只");
+        portion("梨", 200, "个", "只");
+        portion("橙子", 180, "个", "只");
+        portion("香蕉", 120, "根", "个", "只");
+        portion("玉米", 200, "根", "个");
+        portion("红薯", 200, "个", "块");
+        portion("鸡", 1000, "只");
+        portion("鸡腿", 150, "个", "只", "根");
+        portion("牛奶", 250, "杯", "盒", "瓶");
+        portion("酸奶", 150, "杯", "盒");
+        portion("酸奶", 200, "瓶");
+        portion("豆浆", 250, "杯", "碗", "瓶");
+        portion("可乐", 330, "听", "罐");
+        portion("可乐", 500, "瓶");
+
+        ALIASES.put("饭", "米饭");
+        ALIASES.put("白饭", "米饭");
+        ALIASES.put("白米饭", "米饭");
+        ALIASES.put("大米饭", "米饭");
+        ALIASES.put("蛋", "鸡蛋");
+        ALIASES.put("鸡子", "鸡蛋");
+    }
+
+    private PortionParser() {
+    }
+
+    private static void portion(String food, double grams, String... units) {
+        Map<String, Double> portions = FOOD_PORTIONS.get(food);
+        if (portions == null) {
+            portions = new HashMap<>();
+            FOOD_PORTIONS.put(food, portions);
+        }
+        for (String unit : units) {
+            portions.put(unit, grams);
+        }
+    }
+
+    /**
+     * 解析结果：标准食物名与换算出的克数。
+     */
+    public static final class Portion {
+        public final String foodName;
+        public final double grams;
+
+        Portion(String foodName, double grams) {
+            this.foodName = foodName;
+            this.grams = grams;
+        }
+    }
+
+    /**
+     * 名称中带数量与单位、且能可靠换算时返回拆分结果，否则返回 null。
+     */
+    public static Portion parse(String input) {
+        if (input == null) {
+            return null;
+        }
+        String text = input.trim().replaceAll("\\s+", " ");
+        Matcher m = LEADING.matcher(text);
+        if (m.matches()) {
+            return toPortion(m.group(4), m.group(1), m.group(2), m.group(3) != null);
+        }
+        m = TRAILING.matcher(text);
+        if (m.matches()) {
+            return toPortion(m.group(1), m.group(2), m.group(3), m.group(4) != null);
+        }
+        return null;
+    }
+
+    /**
+     * 去掉数量后的标准食物名，用作缓存键（输入时预取与提交时查询一致）。
+     */
+    public static String foodNameOf(String input) {
+        Portion portion = parse(input);
+        return portion != null ? portion.foodName : canonicalFoodName(input);
+    }
+
+    static String canonicalFoodName(String name) {
+        // 与 NutritionPrompt.normalizeFoodName 一致，这里不引用它以免单元测试加载 org.json
+        String normalized = name == null ? "" : name.trim().replaceAll("\\s+", " ");
+        String alias = ALIASES.get(normalized);
+        return alias != null ? alias : normalized;
+    }
+
+    private static Portion toPortion(String food, String number, String unit, boolean extraHalf) {
+        String foodName = canonicalFoodName(food);
+        double count = parseNumber(number);
+        if (!isPlausibleFoodName(foodName) || count <= 0) {
+            return null;
+        }
+        if (extraHalf) {
+            count += 0.5;
+        }
+        String unitKey = unit.toLowerCase(Locale.ROOT);
+        Double mass = MASS_UNITS.get(unitKey);
+        double grams = count * (mass != null ? mass : portionGrams(foodName, unitKey));
+        if (grams <= 0 || grams > MAX_GRAMS) {
+            return null;
+        }
+        return new Portion(foodName, Math.round(grams * 10) / 10.0);
+    }
+
+    /**
+     * 单个字的剩余部分多半是菜名被拆开（“三杯鸡”“一包子”），只接受份量表里已有的单字食物（如“梨”“蛋”）。
+     */
+    private static boolean isPlausibleFoodName(String foodName) {
+        return foodName.length() >= 2 || FOOD_PORTIONS.containsKey(foodName);
+    }
+
+    /**
+     * 某食物一个单位的克数：先查食物本身，再查它结尾的最长已知食物（如“荷包蛋”按“蛋”、“蛋炒饭”按“饭”）；
+     * 都没有时返回 0，不做猜测。
+     */
+    static double portionGrams(String foodName, String unit) {
+        Map<String, Double> exact = FOOD_PORTIONS.get(foodName);
+        if (exact != null && exact.containsKey(unit)) {
+            return exact.get(unit);
+        }
+        String bestKey = null;
+        for (Map.Entry<String, Map<String, Double>> entry : FOOD_PORTIONS.entrySet()) {
+            String key = entry.getKey();
+            if (foodName.endsWith(key) && entry.getValue().containsKey(unit)
+                    && (bestKey == null || key.length() > bestKey.length())) {
+                bestKey = key;
+            }
+        }
+        if (bestKey != null) {
+            return FOOD_PORTIONS.get(bestKey).get(unit);
+        }
+        return 0;
+    }
+
+    /**
+     * 阿拉伯数字或中文数字（支持“两”“十”“百”“半”，如“十二”“两”“半”），无法识别时返回 -1。
+     */
+    static double parseNumber(String text) {
+        if (Character.isDigit(text.charAt(0))) {
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        double total = 0;
+        int current = 0;
+        double half = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '十' || c == '百') {
+                total += (current == 0 ? 1 : current) * (c == '十' ? 10 : 100);
+                current = 0;
+            } else if (c == '半') {
+                if (i != text.length() - 1) {
+                    return -1;
+                }
+                half = 0.5;
+            } else if (c == '两') {
+                current = 2;
+            } else {
+                int digit = CHINESE_DIGITS.indexOf(c);
+                if (digit < 0) {
+                    return -1;
+                }
+                current = digit;
+            }
+        }
+        return total + current + half;
+    }
+}
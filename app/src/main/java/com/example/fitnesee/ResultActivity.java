@@ -8,31 +8,29 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.TimeZone;
 
 public class ResultActivity extends AppCompatActivity {
     private static final String TAG = "ResultActivity";
     private TextView resultText; // 显示结果的文本视图
     private NutritionDatabase nutritionDb; // 营养数据库实例
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("MM月dd日", Locale.getDefault()); // 用于分组
-    private SimpleDateFormat timestampFormat = new SimpleDateFormat("MM月dd日 HH:mm:ss", Locale.getDefault()); // 用于显示
+    private LogPagingAdapter logsAdapter; // VIEW_LOGS 模式下的分页列表
+    private long resultId = -1; // DAILY_DATA 模式下显示的结果 ID
+    // 含估算值的结果在接口数据到达后更新
+    private final ResultCache.Listener resultListener = (id, data) -> {
+        if (id == resultId && !isFinishing()) {
+            bindDailyData(data);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_result); // 设置布局文件
 
-        // 设置时间区为北京时间 (CST)
-        dateFormat.setTimeZone(TimeZone.getTimeZone("Asia/Shanghai"));
-        timestampFormat.setTimeZone(TimeZone.getTimeZone("Asia/Shanghai"));
-
         // 初始化界面组件
         resultText = findViewById(R.id.resultText);
 
@@ -71,9 +69,16 @@ public class ResultActivity extends AppCompatActivity {
 
         switch (resultType) {
             case "DAILY_DATA":
-                // 显示每日摄入数据
-                String dailyResult = intent.getStringExtra("DAILY_RESULT");
-                resultText.setText(dailyResult != null ? dailyResult : "未能获取每日数据");
+                // 按 ID 从会话缓存取回结构化结果并绑定
+                resultId = intent.getLongExtra("RESULT_ID", -1);
+                NutritionDatabase.DailyFoodData dailyData = ResultCache.get(resultId);
+                if (dailyData != null) {
+                    bindDailyData(dailyData);
+                    ResultCache.addListener(resultListener);
+                } else {
+                    Log.w(TAG, "Daily result not found in ResultCache");
+                    resultText.setText("结果已失效，请返回重新提交");
+                }
                 break;
             case "ERROR":
                 // 显示错误信息
@@ -81,45 +86,8 @@ public class ResultActivity extends AppCompatActivity {
                 resultText.setText(errorMessage != null ? errorMessage : "未知错误");
                 break;
             case "VIEW_LOGS":
-                // 显示历史日志
-                List<NutritionDatabase.LogEntry> logs = nutritionDb.getUploadLogs();
-                if (logs == null || logs.isEmpty()) {
-                    Log.d(TAG, "No logs found in database");
-                    resultText.setText("暂无历史记录\n请添加新日志后查看");
-                    return;
-                }
-
-                // 按日期分组日志
-                Map<String, List<NutritionDatabase.LogEntry>> logsByDate = new HashMap<>();
-                for (NutritionDatabase.LogEntry log : logs) {
-                    try {
-                        if (log.timestamp == null) {
-                            Log.w(TAG, "Timestamp is null for log entry: " + log.foodName);
-                            continue;
-                        }
-                        String date = dateFormat.format(log.timestamp); // 格式化为 "MM月dd日"
-                        logsByDate.computeIfAbsent(date, k -> new ArrayList<>()).add(log);
-                    } catch (Exception e) {
-                        Log.e(TAG, "Failed to format timestamp for log entry: " + log.foodName + ", error: " + e.getMessage(), e);
-                        resultText.setText("日志时间戳解析失败: " + e.getMessage());
-                        return;
-                    }
-                }
-
-                // 构建并显示日志内容
-                StringBuilder logText = new StringBuilder();
-                for (Map.Entry<String, List<NutritionDatabase.LogEntry>> entry : logsByDate.entrySet()) {
-                    logText.append("=== ").append(entry.getKey()).append(" ===\n"); // 添加分隔线
-                    for (NutritionDatabase.LogEntry log : entry.getValue()) {
-                        String formattedTimestamp = timestampFormat.format(log.timestamp); // 格式化时间戳
-                        logText.append("  时间：").append(formattedTimestamp).append("\n");
-                        logText.append("  餐次：").append(log.mealType != null ? log.mealType : "未知").append("\n");
-                        logText.append("  食物：").append(log.foodName).append(", ").append(String.format("%.1f", log.grams)).append("克\n");
-                        logText.append("\n"); // 添加换行分隔
-                    }
-                    logText.append("\n"); // 分隔不同日期
-                }
-                resultText.setText(logText.toString());
+                // 显示历史日志：按日期倒序分页读取，只渲染可见的条目
+                showLogs();
                 break;
             default:
                 Log.w(TAG, "Invalid result type: " + resultType);
@@ -145,11 +113,83 @@ public class ResultActivity extends AppCompatActivity {
             });
             setContentView(backToMealInputButton); // 应急处理
         }
+
+        // 提交到结果页的耗时在首次布局完成后结束（非提交进入时忽略）
+        getWindow().getDecorView().post(() -> PerfMetrics.get().endAsync(PerfMetrics.STAGE_SUBMIT_TO_RESULT));
+    }
+
+    private void showLogs() {
+        View scrollView = findViewById(R.id.scrollView);
+        RecyclerView logsRecyclerView = findViewById(R.id.logsRecyclerView);
+        if (scrollView == null || logsRecyclerView == null) {
+            Log.e(TAG, "Log list views are missing in activity_result");
+            resultText.setText("界面初始化失败，请检查布局文件");
+            return;
+        }
+        scrollView.setVisibility(View.GONE);
+        logsRecyclerView.setVisibility(View.VISIBLE);
+        logsAdapter = new LogPagingAdapter(nutritionDb, (totalRows, endReached) -> {
+            if (totalRows == 0) {
+                Log.d(TAG, "No logs found in database");
+                logsRecyclerView.setVisibility(View.GONE);
+                scrollView.setVisibility(View.VISIBLE);
+                resultText.setText("暂无历史记录\n请添加新日志后查看");
+            }
+        });
+        logsAdapter.attachTo(logsRecyclerView, new LinearLayoutManager(this));
+        logsAdapter.loadNextPage();
+    }
+
+    private void bindDailyData(NutritionDatabase.DailyFoodData data) {
+        View summaryLayout = findViewById(R.id.dailySummaryLayout);
+        TextView totalCaloriesText = findViewById(R.id.totalCaloriesText);
+        TextView recommendedCaloriesText = findViewById(R.id.recommendedCaloriesText);
+        TextView macrosText = findViewById(R.id.macrosText);
+        TextView mealCaloriesText = findViewById(R.id.mealCaloriesText);
+        TextView foodDetailsText = findViewById(R.id.foodDetailsText);
+        TextView adviceText = findViewById(R.id.adviceText);
+        if (summaryLayout == null || totalCaloriesText == null || recommendedCaloriesText == null || macrosText == null
+                || mealCaloriesText == null || foodDetailsText == null || adviceText == null) {
+            Log.e(TAG, "Daily summary views are missing in activity_result");
+            resultText.setText("界面初始化失败，请检查布局文件");
+            return;
+        }
+
+        summaryLayout.setVisibility(View.VISIBLE);
+        resultText.setVisibility(View.GONE);
+        totalCaloriesText.setText(String.format(Locale.getDefault(), "每日摄入总热量：%.1f 千卡", data.totalCalories));
+        recommendedCaloriesText.setText(String.format(Locale.getDefault(), "推荐热量：%.1f 千卡", data.recommendedCalories));
+        macrosText.setText(String.format(Locale.getDefault(), "蛋白质：%.1f 克\n脂肪：%.1f 克\n碳水化合物：%.1f 克",
+                data.totalProtein, data.totalFat, data.totalCarb));
+        mealCaloriesText.setText(String.format(Locale.getDefault(), "早餐热量：%.1f 千卡\n午餐热量：%.1f 千卡\n晚餐热量：%.1f 千卡",
+                data.breakfastCalories, data.lunchCalories, data.dinnerCalories));
+
+        StringBuilder foods = new StringBuilder();
+        for (int i = 0; i < data.foods.size(); i++) {
+            if (foods.length() > 0) {
+                foods.append('\n');
+            }
+            String name = data.foods.nameAt(i);
+            foods.append(String.format(Locale.getDefault(), "%s：%.1f 千卡", name, data.foods.caloriesAt(i)));
+            if (data.provisionalFoods.contains(name)) {
+                foods.append("（估算）");
+            }
+        }
+        if (!data.provisionalFoods.isEmpty()) {
+            foods.append("\n标注“估算”的食物暂用本地估算值，获取到数据后会自动更新");
+        }
+        foodDetailsText.setText(foods);
+        adviceText.setText(data.advice);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        ResultCache.removeListener(resultListener);
+        if (logsAdapter != null) {
+            logsAdapter.close();
+            logsAdapter = null;
+        }
         if (nutritionDb != null) {
             try {
                 nutritionDb.close(); // 关闭数据库连接
@@ -0,0 +1,75 @@
+package com.example.fitnesee;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内（会话级）的分析结果缓存。Intent 中只传结果 ID，ResultActivity 按 ID 取回结构化数据，
+ * 旋转屏幕或返回时直接重新渲染，无需重新计算或请求接口。
+ * 含估算值的结果拿到接口数据后通过 update() 替换，并在主线程通知正在显示它的页面。
+ */
+public final class ResultCache {
+    private static final int MAX_ENTRIES = 8;
+    private static final AtomicLong nextId = new AtomicLong(1);
+    private static final Map<Long, NutritionDatabase.DailyFoodData> results =
+            new LinkedHashMap<Long, NutritionDatabase.DailyFoodData>(MAX_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, NutritionDatabase.DailyFoodData> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface Listener {
+        void onResultUpdated(long id, NutritionDatabase.DailyFoodData data);
+    }
+
+    private ResultCache() {
+    }
+
+    public static void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public static long put(NutritionDatabase.DailyFoodData data) {
+        long id = nextId.getAndIncrement();
+        synchronized (results) {
+            results.put(id, data);
+        }
+        return id;
+    }
+
+    /**
+     * 替换已有的结果（已被淘汰的 ID 忽略），可在任意线程调用。
+     */
+    public static void update(long id, NutritionDatabase.DailyFoodData data) {
+        synchronized (results) {
+            if (!results.containsKey(id)) {
+                return;
+            }
+            results.put(id, data);
+        }
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onResultUpdated(id, data);
+            }
+        });
+    }
+
+    public static NutritionDatabase.DailyFoodData get(long id) {
+        synchronized (results) {
+            return results.get(id);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.fitnesee;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 冷启动预热：启动画面显示期间，在两个后台线程上并行完成
+ * 数据库打开（含升级）与食物缓存恢复/预读、本地建议目录加载、OkHttpClient 初始化与接口域名解析，
+ * 这些工作都不再落在主线程或第一次提交的关键路径上。
+ */
+public final class StartupWarmup {
+    private static final String TAG = "StartupWarmup";
+    // 启动画面最多等待这么久，预热没完成也不再阻挡首帧
+    static final long MAX_SPLASH_MS = 500;
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private static final CountDownLatch databaseReady = new CountDownLatch(1);
+    private static boolean started;
+    private static long startedAtMs;
+
+    private StartupWarmup() {
+    }
+
+    /**
+     * 幂等，可在主线程调用。
+     */
+    public static synchronized void start(Context context) {
+        if (started) {
+            return;
+        }
+        started = true;
+        startedAtMs = SystemClock.elapsedRealtime();
+        Context appContext = context.getApplicationContext();
+        executor.execute(() -> {
+            try {
+                warmDatabase(appContext);
+            } finally {
+                databaseReady.countDown();
+            }
+        });
+        executor.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            ZhipuClient.warmUp();
+            Log.d(TAG, "Network client warmed up in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        });
+    }
+
+    /**
+     * 启动画面的保持条件：数据库就绪或超过 MAX_SPLASH_MS 后返回 false。
+     */
+    public static synchronized boolean shouldKeepSplash() {
+        return started && databaseReady.getCount() > 0
+                && SystemClock.elapsedRealtime() - startedAtMs < MAX_SPLASH_MS;
+    }
+
+    private static void warmDatabase(Context context) {
+        long start = SystemClock.elapsedRealtime();
+        NutritionDatabase nutritionDb = new NutritionDatabase(context);
+        try {
+            // 新设备恢复备份或重装后，从食物缓存快照恢复已学习过的食物
+            int restored = FoodCacheSnapshot.restore(context);
+            int warmed = nutritionDb.warmUp();
+            AdviceEngine.get(context);
+            Log.d(TAG, "Database warmed up in " + (SystemClock.elapsedRealtime() - start) + " ms, restored "
+                    + restored + " foods, preloaded " + warmed + " recent foods");
+        } catch (Exception e) {
+            Log.e(TAG, "Database warmup failed: " + e.getMessage(), e);
+        } finally {
+            nutritionDb.close();
+        }
+    }
+}
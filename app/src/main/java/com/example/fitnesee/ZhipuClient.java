@@ -0,0 +1,211 @@
+package com.example.fitnesee;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+import android.util.MalformedJsonException;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.UnknownHostException;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 智谱 chat/completions 接口的唯一出口：统一管理 OkHttpClient、接口地址与请求调度。
+ * 地址默认取 BuildConfig.ZHIPU_API_URL，可在运行时覆盖（调试包中的本地模拟服务器、测试）。
+ * 所有请求都经过 ApiScheduler 限速排队，被限流（429/503）时按 Retry-After 退避后有限次重试。
+ */
+public final class ZhipuClient {
+    private static final String TAG = "ZhipuClient";
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    // 稳定速率每秒 2 个请求，允许 5 个的突发，同时最多 3 个在途
+    private static final int BURST_CAPACITY = 5;
+    private static final double REQUESTS_PER_SECOND = 2.0;
+    static final int MAX_CONCURRENT_REQUESTS = 3;
+    private static final int MAX_THROTTLE_RETRIES = 2;
+
+    private static final OkHttpClient client = new OkHttpClient();
+    private static final ApiScheduler scheduler = new ApiScheduler(BURST_CAPACITY, REQUESTS_PER_SECOND, MAX_CONCURRENT_REQUESTS);
+    private static volatile String endpointOverride;
+
+    private ZhipuClient() {
+    }
+
+    public static String getEndpoint() {
+        String override = endpointOverride;
+        return override != null ? override : BuildConfig.ZHIPU_API_URL;
+    }
+
+    /**
+     * 覆盖接口地址，传 null 恢复默认。
+     */
+    public static void setEndpointOverride(String endpoint) {
+        endpointOverride = endpoint;
+        Log.i(TAG, "Zhipu endpoint set to: " + getEndpoint());
+    }
+
+    /**
+     * 启动预热时在后台调用：触发本类初始化（创建 OkHttpClient）并提前解析接口域名，
+     * 第一次请求不必在关键路径上做这些事。
+     */
+    public static void warmUp() {
+        HttpUrl url = HttpUrl.parse(getEndpoint());
+        if (url == null) {
+            return;
+        }
+        try {
+            client.dns().lookup(url.host());
+        } catch (UnknownHostException e) {
+            Log.w(TAG, "DNS warmup failed for " + url.host() + ": " + e.getMessage());
+        }
+    }
+
+    public static Request newChatRequest(JSONObject requestBody) {
+        return new Request.Builder()
+                .url(getEndpoint())
+                .addHeader("Authorization", "Bearer " + BuildConfig.ZHIPU_API_KEY)
+                .post(RequestBody.create(JSON, requestBody.toString()))
+                .build();
+    }
+
+    public static Response execute(Request request) throws IOException {
+        return execute(request, ApiScheduler.Priority.NORMAL);
+    }
+
+    /**
+     * 按优先级排队后发出请求。被限流时在调度器暂停结束后重试，重试用尽则把最后的 429/503 响应交给调用方；
+     * 402（余额不足）等其他错误重试也无济于事，直接返回。
+     */
+    public static Response execute(Request request, ApiScheduler.Priority priority) throws IOException {
+        return execute(request, priority, null);
+    }
+
+    /**
+     * 同上，handle 不为 null 时可从其他线程取消这次调用（排队中或请求进行中）。
+     */
+    public static Response execute(Request request, ApiScheduler.Priority priority, CallHandle handle) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                PerfMetrics.get().record(PerfMetrics.STAGE_API_QUEUE_WAIT, scheduler.acquire(priority));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for an API slot");
+            }
+            Response response;
+            try {
+                Call call = client.newCall(request);
+                if (handle != null && !handle.attach(call)) {
+                    throw new IOException("Canceled");
+                }
+                response = call.execute();
+            } catch (IOException e) {
+                scheduler.release(-1, null);
+                throw e;
+            }
+            long backoffMs = scheduler.release(response.code(), response.header("Retry-After"));
+            if (!ApiScheduler.isThrottled(response.code()) || attempt >= MAX_THROTTLE_RETRIES) {
+                return response;
+            }
+            PerfMetrics.get().increment(PerfMetrics.COUNT_API_THROTTLED);
+            if (handle != null) {
+                handle.throttled = true;
+            }
+            Log.w(TAG, "Request throttled (" + response.code() + "), retrying after " + backoffMs + " ms, attempt " + (attempt + 1));
+            response.close();
+        }
+    }
+
+    /**
+     * 边读响应体边解析，只取出 choices[0].message.content，不把整个响应读成字符串、也不构建 JSONObject；
+     * 拿到内容后不再解析剩余部分（关闭响应时由 OkHttp 丢弃）。没有响应体、格式不对或缺少该字段时返回 null，
+     * 读取过程中的网络错误照常抛出。
+     */
+    public static String readContent(Response response) throws IOException {
+        ResponseBody body = response.body();
+        if (body == null) {
+            return null;
+        }
+        JsonReader reader = new JsonReader(body.charStream());
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("choices".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    return reader.hasNext() ? readMessageContent(reader) : null;
+                }
+                reader.skipValue();
+            }
+            return null;
+        } catch (MalformedJsonException | IllegalStateException e) {
+            Log.w(TAG, "Unparseable chat response: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 读取一条 choice 对象中 message.content 的值
+    private static String readMessageContent(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"message".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("content".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                    return reader.nextString();
+                }
+                reader.skipValue();
+            }
+            return null;
+        }
+        return null;
+    }
+
+    public static ApiScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * 可从其他线程取消的一次调用，用于对冲请求中取消落败的一方。
+     */
+    public static final class CallHandle {
+        private volatile Call call;
+        private volatile boolean cancelled;
+        private volatile boolean throttled;
+
+        synchronized boolean attach(Call call) {
+            this.call = call;
+            return !cancelled;
+        }
+
+        public synchronized void cancel() {
+            cancelled = true;
+            if (call != null) {
+                call.cancel();
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 这次调用是否遇到过限流重试。
+         */
+        public boolean wasThrottled() {
+            return throttled;
+        }
+    }
+}
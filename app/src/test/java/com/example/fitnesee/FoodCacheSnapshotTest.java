@@ -0,0 +1,95 @@
+package com.example.fitnesee;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FoodCacheSnapshotTest {
+    private static final double DELTA = 1e-6;
+    // 故意不按字节序给出，覆盖前缀（鸡/鸡蛋、rice/rice cake）、ASCII 与中文混排
+    private static final String[] NAMES = {"鸡蛋", "米饭", "rice cake", "鸡", "rice", "Apple", "鸡胸肉"};
+
+    @Test
+    public void writeThenOpen_findsEveryFood() throws IOException {
+        List<byte[]> names = new ArrayList<>();
+        List<float[]> macros = new ArrayList<>();
+        for (int i = 0; i < NAMES.length; i++) {
+            names.add(NAMES[i].getBytes(StandardCharsets.UTF_8));
+            macros.add(new float[]{100 + i, i, i * 0.5f, 10 + i});
+        }
+
+        File file = writeTemp(FoodCacheSnapshot.encode(names, macros));
+        try {
+            FoodCacheSnapshot snapshot = FoodCacheSnapshot.open(file);
+            assertEquals(NAMES.length, snapshot.size());
+            for (int i = 0; i < NAMES.length; i++) {
+                int index = snapshot.indexOf(NAMES[i]);
+                assertTrue(NAMES[i], index >= 0);
+                assertEquals(NAMES[i], snapshot.nameAt(index));
+                assertEquals(100 + i, snapshot.caloriesAt(index), DELTA);
+                assertEquals(i, snapshot.proteinAt(index), DELTA);
+                assertEquals(i * 0.5, snapshot.fatAt(index), DELTA);
+                assertEquals(10 + i, snapshot.carbAt(index), DELTA);
+            }
+            assertEquals(-1, snapshot.indexOf("鸡腿"));
+            assertEquals(-1, snapshot.indexOf("ric"));
+            assertEquals(-1, snapshot.indexOf(""));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void emptySnapshot_opens() throws IOException {
+        File file = writeTemp(FoodCacheSnapshot.encode(new ArrayList<byte[]>(), new ArrayList<float[]>()));
+        try {
+            FoodCacheSnapshot snapshot = FoodCacheSnapshot.open(file);
+            assertEquals(0, snapshot.size());
+            assertEquals(-1, snapshot.indexOf("鸡蛋"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void corruptedFile_isRejected() throws IOException {
+        List<byte[]> names = new ArrayList<>();
+        List<float[]> macros = new ArrayList<>();
+        names.add("鸡蛋".getBytes(StandardCharsets.UTF_8));
+        macros.add(new float[]{144, 13.3f, 8.8f, 2.8f});
+        byte[] data = FoodCacheSnapshot.encode(names, macros);
+
+        assertRejected(new byte[]{1, 2, 3});
+        // 截掉名称区的最后一个字节
+        byte[] truncated = new byte[data.length - 1];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        assertRejected(truncated);
+    }
+
+    private static void assertRejected(byte[] data) throws IOException {
+        File file = writeTemp(data);
+        try {
+            FoodCacheSnapshot.open(file);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // 预期：文件头或长度不合法
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static File writeTemp(byte[] data) throws IOException {
+        File file = File.createTempFile("food_cache", ".bin");
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(data);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.fitnesee;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.*;
+
+public class MealOptimizerTest {
+    private static final int CANDIDATES = 5000;
+    // 时间不走的时钟：搜索总能完整做完，结果不受机器快慢影响（实际耗时见 androidTest 中的 MealOptimizerBenchmark）
+    private static final LongSupplier FROZEN_CLOCK = () -> 0L;
+
+    @Test
+    public void manyCandidates_fitTarget() {
+        List<MealOptimizer.Candidate> candidates = syntheticCandidates(CANDIDATES, 42);
+
+        List<AdviceEngine.Portion> portions = MealOptimizer.optimize(candidates, 600, 40, 20, 60, FROZEN_CLOCK);
+
+        assertFalse(portions.isEmpty());
+        assertTrue(portions.size() <= MealOptimizer.MAX_ITEMS);
+        double calories = 0;
+        double protein = 0;
+        for (AdviceEngine.Portion portion : portions) {
+            calories += portion.food.calories * portion.grams / 100;
+            protein += portion.food.protein * portion.grams / 100;
+        }
+        assertEquals(600, calories, 30);
+        assertEquals(40, protein, 10);
+    }
+
+    @Test
+    public void exhaustedBudget_returnsBestFoundSoFar() {
+        List<MealOptimizer.Candidate> candidates = syntheticCandidates(CANDIDATES, 42);
+        // 第一次读时钟之后时间就已超过预算：做完第一轮扩展即停止，返回单个食物的最好份量
+        long[] reads = {0};
+        LongSupplier clock = () -> reads[0]++ == 0 ? 0 : TimeUnit.MILLISECONDS.toNanos(MealOptimizer.TIME_BUDGET_MS + 1);
+
+        List<AdviceEngine.Portion> portions = MealOptimizer.optimize(candidates, 600, 40, 20, 60, clock);
+
+        assertEquals(1, portions.size());
+    }
+
+    @Test
+    public void countUnits_useWholeUnits() {
+        List<MealOptimizer.Candidate> candidates = new ArrayList<>();
+        candidates.add(new MealOptimizer.Candidate(new AdviceEngine.Food("鸡蛋", 144, 13.3, 8.8, 2.8, "个", 50), 10));
+
+        List<AdviceEngine.Portion> portions = MealOptimizer.optimize(candidates, 150, 14, 9, 3, FROZEN_CLOCK);
+
+        assertEquals(1, portions.size());
+        assertEquals(100, portions.get(0).grams, 1e-6);
+    }
+
+    @Test
+    public void noCandidatesOrTarget_returnsEmpty() {
+        assertTrue(MealOptimizer.optimize(Collections.<MealOptimizer.Candidate>emptyList(), 600, 40, 20, 60).isEmpty());
+        assertTrue(MealOptimizer.optimize(syntheticCandidates(10, 1), 0, 40, 20, 60).isEmpty());
+    }
+
+    /**
+     * 随机生成每 100g 的营养数据，热量按 4/9/4 折算；固定种子保证结果可复现。
+     */
+    private static List<MealOptimizer.Candidate> syntheticCandidates(int count, long seed) {
+        Random random = new Random(seed);
+        List<MealOptimizer.Candidate> candidates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double protein = random.nextDouble() * 30;
+            double fat = random.nextDouble() * 25;
+            double carb = random.nextDouble() * 70;
+            double calories = protein * 4 + fat * 9 + carb * 4;
+            candidates.add(new MealOptimizer.Candidate(
+                    new AdviceEngine.Food("food-" + i, calories, protein, fat, carb, null, 0), random.nextInt(20)));
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.fitnesee;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PortionParserTest {
+    private static final double DELTA = 1e-6;
+
+    @Test
+    public void countUnits_useFoodDefaultPortion() {
+        assertPortion("鸡蛋", 100, PortionParser.parse("2个鸡蛋"));
+        assertPortion("鸡蛋", 100, PortionParser.parse("鸡蛋2个"));
+        assertPortion("米饭", 150, PortionParser.parse("一碗米饭"));
+        assertPortion("米饭", 75, PortionParser.parse("半碗米饭"));
+        assertPortion("苹果", 400, PortionParser.parse("两个苹果"));
+        assertPortion("馒头", 150, PortionParser.parse("一个半馒头"));
+    }
+
+    @Test
+    public void massUnits_convertToGrams() {
+        assertPortion("鸡胸肉", 200, PortionParser.parse("鸡胸肉200g"));
+        assertPortion("鸡胸肉", 200, PortionParser.parse("200克 鸡胸肉"));
+        assertPortion("米饭", 100, PortionParser.parse("二两米饭"));
+        assertPortion("牛奶", 250, PortionParser.parse("牛奶250ml"));
+        assertPortion("牛肉", 500, PortionParser.parse("1斤牛肉"));
+    }
+
+    @Test
+    public void aliasesAndSuffixes_shareCanonicalPortions() {
+        assertPortion("米饭", 150, PortionParser.parse("一碗饭"));
+        assertPortion("茶叶蛋", 150, PortionParser.parse("3个茶叶蛋"));
+        assertPortion("蛋炒饭", 150, PortionParser.parse("一碗蛋炒饭"));
+        assertPortion("梨", 400, PortionParser.parse("2个梨"));
+    }
+
+    @Test
+    public void dishNames_areNotTornApart() {
+        assertNull(PortionParser.parse("三杯鸡"));
+        assertNull(PortionParser.parse("一碗香"));
+        assertNull(PortionParser.parse("一包子"));
+        assertNull(PortionParser.parse("一根筋"));
+    }
+
+    @Test
+    public void unknownUnitWeights_areNotGuessed() {
+        assertNull(PortionParser.parse("小笼包10个"));
+        assertNull(PortionParser.parse("十串羊肉串"));
+        assertNull(PortionParser.parse("半个西瓜"));
+        assertNull(PortionParser.parse("一盘紫菜包饭"));
+    }
+
+    @Test
+    public void chineseNumbers() {
+        assertEquals(12, PortionParser.parseNumber("十二"), DELTA);
+        assertEquals(20, PortionParser.parseNumber("二十"), DELTA);
+        assertEquals(2, PortionParser.parseNumber("两"), DELTA);
+        assertEquals(0.5, PortionParser.parseNumber("半"), DELTA);
+        assertEquals(1.5, PortionParser.parseNumber("1.5"), DELTA);
+    }
+
+    @Test
+    public void namesWithoutQuantity_areLeftAlone() {
+        assertNull(PortionParser.parse("鸡蛋"));
+        assertNull(PortionParser.parse("番茄炒蛋"));
+        assertNull(PortionParser.parse("7up"));
+        assertNull(PortionParser.parse("200个鸡蛋"));
+        assertEquals("鸡蛋", PortionParser.foodNameOf(" 鸡蛋 "));
+        assertEquals("鸡蛋", PortionParser.foodNameOf("2个鸡蛋"));
+    }
+
+    private static void assertPortion(String foodName, double grams, PortionParser.Portion portion) {
+        assertNotNull(portion);
+        assertEquals(foodName, portion.foodName);
+        assertEquals(grams, portion.grams, DELTA);
+    }
+}
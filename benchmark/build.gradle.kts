@@ -0,0 +1,47 @@
+plugins {
+    alias(libs.plugins.android.test)
+    alias(libs.plugins.baselineprofile)
+}
+
+android {
+    namespace = "com.example.fitnesee.benchmark"
+    compileSdk = 35
+
+    defaultConfig {
+        minSdk = 28
+        targetSdk = 35
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+        // 每个测试在设备上输出 *-benchmarkData.json，由 AGP 拉取到
+        // build/outputs/connected_android_test_additional_output/ 下，便于跨版本比较趋势
+        testInstrumentationRunnerArguments["androidx.benchmark.output.enable"] = "true"
+    }
+
+    buildTypes {
+        // 对应 :app 的 benchmark 构建类型：./gradlew :benchmark:connectedBenchmarkAndroidTest
+        create("benchmark") {
+            isDebuggable = true
+            signingConfig = getByName("debug").signingConfig
+            matchingFallbacks += listOf("release")
+        }
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_17
+        targetCompatibility = JavaVersion.VERSION_17
+    }
+
+    targetProjectPath = ":app"
+    experimentalProperties["android.experimental.self-instrumenting"] = true
+}
+
+// 在已连接的设备上生成：./gradlew :app:generateReleaseBaselineProfile
+baselineProfile {
+    useConnectedDevices = true
+}
+
+dependencies {
+    implementation(libs.ext.junit)
+    implementation(libs.espresso.core)
+    implementation(libs.uiautomator)
+    implementation(libs.benchmark.macro.junit4)
+}
@@ -0,0 +1,40 @@
+package com.example.fitnesee.benchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * 生成 Baseline Profile：覆盖冷启动、进入录入页填写食物、查看并滑动日志这几条主流程。
+ * 运行 ./gradlew :app:generateReleaseBaselineProfile，结果写入 app/src/release/generated/baselineProfiles。
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class BaselineProfileGenerator {
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(
+                Journeys.PACKAGE_NAME,
+                15,     // maxIterations
+                3,      // stableIterations
+                null,   // outputFilePrefix
+                true,   // includeInStartupProfile：同时用于启动时的 dex 布局优化
+                false,  // strictStability
+                className -> true,
+                scope -> {
+                    Journeys.startToMealEntry(scope);
+                    Journeys.enterFood(scope, "米饭", "150");
+                    Journeys.openLogsAndScroll(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.fitnesee.benchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.BySelector;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import java.io.IOException;
+
+/**
+ * 生成 Baseline Profile 与基准测试共用的用户操作路径，按控件 ID 查找界面元素；
+ * 数据准备通过 benchmark 包中的调试入口（SeedHistoryActivity、MockApiActivity）完成。
+ */
+final class Journeys {
+    static final String PACKAGE_NAME = "com.example.fitnesee";
+    private static final long TIMEOUT_MS = 5000;
+    private static final long RESULT_TIMEOUT_MS = 30000;
+
+    private Journeys() {
+    }
+
+    /**
+     * 冷启动到首页，再进入录入页，等待餐次列表出现。
+     */
+    static void startToMealEntry(MacrobenchmarkScope scope) {
+        scope.pressHome();
+        scope.startActivityAndWait();
+        UiDevice device = scope.getDevice();
+        find(device, "startButton").click();
+        find(device, "recyclerViewMeals");
+    }
+
+    /**
+     * 在录入页第一个餐次添加一行食物并填写名称与克数。
+     */
+    static void enterFood(MacrobenchmarkScope scope, String foodName, String grams) {
+        UiDevice device = scope.getDevice();
+        find(device, "addFoodButton").click();
+        find(device, "editTextFoodName").setText(foodName);
+        find(device, "editTextGrams").setText(grams);
+        device.waitForIdle();
+    }
+
+    /**
+     * 从录入页打开日志页并上下滑动列表。
+     */
+    static void openLogsAndScroll(MacrobenchmarkScope scope) {
+        openLogs(scope);
+        scrollLogs(scope);
+    }
+
+    static void openLogs(MacrobenchmarkScope scope) {
+        find(scope.getDevice(), "viewLogsButton").click();
+        find(scope.getDevice(), "logRecyclerView");
+    }
+
+    static void scrollLogs(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 list = find(device, "logRecyclerView");
+        // 避开系统手势区域
+        list.setGestureMargin(device.getDisplayWidth() / 5);
+        list.fling(Direction.DOWN);
+        device.waitForIdle();
+        list.fling(Direction.UP);
+        device.waitForIdle();
+    }
+
+    /**
+     * 点击提交并等待结果页显示每日汇总。
+     */
+    static void submitAndWaitForResult(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        find(device, "submitButton").click();
+        if (!device.wait(Until.hasObject(By.res(PACKAGE_NAME, "totalCaloriesText")), RESULT_TIMEOUT_MS)) {
+            throw new IllegalStateException("Result not shown within " + RESULT_TIMEOUT_MS + " ms");
+        }
+    }
+
+    /**
+     * 通过 benchmark 包中的 SeedHistoryActivity 写入模拟历史日志，返回时已写完。
+     */
+    static void seedHistory(MacrobenchmarkScope scope, int count) {
+        shell(scope, "am start -W -n " + PACKAGE_NAME + "/" + PACKAGE_NAME + ".SeedHistoryActivity"
+                + " --ei count " + count + " --ez reset true");
+    }
+
+    /**
+     * 在应用进程内启动本地模拟智谱接口，返回时已可接受请求。
+     */
+    static void startMockApi(MacrobenchmarkScope scope, long latencyMs) {
+        shell(scope, "am start -W -n " + PACKAGE_NAME + "/" + PACKAGE_NAME + ".MockApiActivity"
+                + " --ez enable true --ez wait true --el latency_ms " + latencyMs);
+    }
+
+    static void clearAppData(MacrobenchmarkScope scope) {
+        shell(scope, "pm clear " + PACKAGE_NAME);
+    }
+
+    private static void shell(MacrobenchmarkScope scope, String command) {
+        try {
+            scope.getDevice().executeShellCommand(command);
+        } catch (IOException e) {
+            throw new IllegalStateException("Shell command failed: " + command, e);
+        }
+    }
+
+    static UiObject2 find(UiDevice device, String resourceId) {
+        BySelector selector = By.res(PACKAGE_NAME, resourceId);
+        if (!device.wait(Until.hasObject(selector), TIMEOUT_MS)) {
+            throw new IllegalStateException("View not found: " + resourceId);
+        }
+        return device.findObject(selector);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.fitnesee.benchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * 日志页在 1 万条以上历史记录下上下快速滑动时的帧耗时（frameDurationCpuMs / frameOverrunMs）。
+ * 历史数据只在第一次迭代前写入，之后各迭代复用。
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class LogScrollBenchmark {
+    private static final int ITERATIONS = 5;
+    private static final int HISTORY_ENTRIES = 10000;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    private boolean seeded;
+
+    @Test
+    public void scrollHistory() {
+        benchmarkRule.measureRepeated(
+                Journeys.PACKAGE_NAME,
+                Collections.singletonList(new FrameTimingMetric()),
+                new CompilationMode.Partial(BaselineProfileMode.Require, 0),
+                StartupMode.COLD,
+                ITERATIONS,
+                scope -> {
+                    if (!seeded) {
+                        Journeys.seedHistory(scope, HISTORY_ENTRIES);
+                        seeded = true;
+                    }
+                    Journeys.startToMealEntry(scope);
+                    Journeys.openLogs(scope);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Journeys.scrollLogs(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
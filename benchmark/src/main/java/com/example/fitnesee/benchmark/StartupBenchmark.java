@@ -0,0 +1,72 @@
+package com.example.fitnesee.benchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * MainActivity 的冷启动与温启动耗时（timeToInitialDisplay / timeToFullDisplay），
+ * 分别在不预编译与按 Baseline Profile 预编译两种情况下测量，对比 Profile 的收益。
+ */
+@RunWith(Parameterized.class)
+@LargeTest
+public class StartupBenchmark {
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    private final CompilationMode compilationMode;
+
+    public StartupBenchmark(String name, CompilationMode compilationMode) {
+        this.compilationMode = compilationMode;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> compilationModes() {
+        return Arrays.asList(
+                new Object[]{"none", new CompilationMode.None()},
+                new Object[]{"baselineProfile", new CompilationMode.Partial(BaselineProfileMode.Require, 0)});
+    }
+
+    @Test
+    public void coldStartup() {
+        measureStartup(StartupMode.COLD);
+    }
+
+    @Test
+    public void warmStartup() {
+        measureStartup(StartupMode.WARM);
+    }
+
+    private void measureStartup(StartupMode startupMode) {
+        benchmarkRule.measureRepeated(
+                Journeys.PACKAGE_NAME,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode,
+                startupMode,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                });
+    }
+}
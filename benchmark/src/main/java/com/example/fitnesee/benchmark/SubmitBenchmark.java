@@ -0,0 +1,60 @@
+package com.example.fitnesee.benchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.Metric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * 从点击提交到结果页显示的耗时，请求发往应用进程内的本地模拟接口（固定延迟，无随机错误）。
+ * 每次迭代前清空应用数据，使营养查询都走未命中缓存的网络路径；
+ * 同时记录数据层的 submission_total 与两类接口调用区段，界面与数据层的退化都能反映在结果中。
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class SubmitBenchmark {
+    private static final int ITERATIONS = 5;
+    private static final long MOCK_LATENCY_MS = 300;
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void submitToResult() {
+        // 区段名与 PerfMetrics 中的阶段常量一致
+        List<Metric> metrics = Arrays.asList(
+                new TraceSectionMetric("submit_to_result", TraceSectionMetric.Mode.First.INSTANCE, "submit_to_result", true),
+                new TraceSectionMetric("submission_total", TraceSectionMetric.Mode.First.INSTANCE, "submission_total", true),
+                new TraceSectionMetric("api_nutrition", TraceSectionMetric.Mode.Sum.INSTANCE, "api_nutrition", true),
+                new TraceSectionMetric("api_advice", TraceSectionMetric.Mode.Sum.INSTANCE, "api_advice", true));
+        benchmarkRule.measureRepeated(
+                Journeys.PACKAGE_NAME,
+                metrics,
+                new CompilationMode.Partial(BaselineProfileMode.Require, 0),
+                null,
+                ITERATIONS,
+                scope -> {
+                    Journeys.clearAppData(scope);
+                    Journeys.startMockApi(scope, MOCK_LATENCY_MS);
+                    Journeys.startToMealEntry(scope);
+                    Journeys.enterFood(scope, "米饭", "150");
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Journeys.submitAndWaitForResult(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}